@@ -1,6 +1,7 @@
 package edu.uiowa.cs.warp;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.PriorityQueue;
@@ -9,32 +10,58 @@ import java.util.Set;
 public class Activation extends SchedulableObject implements Comparable<Activation> { 
 
 	private ArrayList<String> coordinators;
+	private ArrayList<Integer> coordinatorIds; // WorkLoad ids of coordinators
 	private ArrayList<Edge> edges;
 	private ArrayList<ScheduleTime> additionalScheduleTimes;
 
 	private Set<String> conflicts; // nodes with conflicts
+	private BitSet conflictIds; // ids of nodes with conflicts
+	/* A copy shares the edges, coordinators, conflicts and schedule
+	 * times of the activation it copies, since the many entries of an
+	 * activation in a schedule don't change them. Either one copies 
+	 * them before changing them (see ownParts()).
+	 */
+	private Boolean sharedParts;
 	
+	/* Aggregates of the edge parameters, kept up to date as edges
+	 * are added and removed, so that updatePriorityAndRelease() and
+	 * getDelta() don't need to build queues or search the edges.
+	 */
+	private int minPeriod;
+	private int minDeadline;
+	private int minPriority;
+	private int maxNumTx;
+	private static final ReleaseTimeComparator<Edge> RELEASE_ORDER = 
+			new ReleaseTimeComparator<Edge>();
+
 
 	Activation (String name){
 		super();
 		setName(name);
 		this.edges = new ArrayList<Edge>();
 		this.coordinators = new ArrayList<String>();
+		this.coordinatorIds = new ArrayList<Integer>();
 		this.conflicts = new HashSet<String>();
+		this.conflictIds = new BitSet();
 		this.additionalScheduleTimes = new ArrayList<ScheduleTime>();
+		this.sharedParts = false;
+		resetEdgeAggregates();
 	}
 	
-	Activation (Activation elem, Integer time){
+	Activation (Activation elem, int time){
 		super(elem, time);
-		this.edges = new ArrayList<Edge>();
-		this.edges.addAll(elem.getEdges());
-		this.coordinators = new ArrayList<String>();
-		this.coordinators.addAll(elem.getCoordinators());
-		// conflicts = new Set<String>();
-		this.conflicts = new HashSet<String>();
-		this.conflicts.addAll(elem.getConflicts());
-		this.additionalScheduleTimes = new ArrayList<ScheduleTime>();
-		this.additionalScheduleTimes.addAll(elem.getAdditionalScheduleTimes());
+		this.edges = elem.edges;
+		this.coordinators = elem.coordinators;
+		this.coordinatorIds = elem.coordinatorIds;
+		this.conflicts = elem.conflicts;
+		this.conflictIds = elem.conflictIds;
+		this.additionalScheduleTimes = elem.additionalScheduleTimes;
+		this.sharedParts = true;
+		elem.sharedParts = true;
+		this.minPeriod = elem.minPeriod;
+		this.minDeadline = elem.minDeadline;
+		this.minPriority = elem.minPriority;
+		this.maxNumTx = elem.maxNumTx;
 	}
 	
 	@Override 
@@ -84,12 +111,63 @@ public class Activation extends SchedulableObject implements Comparable<Activati
 			SchedulableObjectQueue<Edge>(new PriorityComparator<Edge>(),this.edges);
 	}
 	
+	/*
+	 * Copies the parts shared with other copies of this activation,
+	 * so that they can be changed.
+	 */
+	private void ownParts() {
+		if (sharedParts) {
+			edges = new ArrayList<Edge>(edges);
+			coordinators = new ArrayList<String>(coordinators);
+			coordinatorIds = new ArrayList<Integer>(coordinatorIds);
+			conflicts = new HashSet<String>(conflicts);
+			conflictIds = (BitSet) conflictIds.clone();
+			additionalScheduleTimes = new ArrayList<ScheduleTime>(additionalScheduleTimes);
+			sharedParts = false;
+		}
+	}
+	
 	public void addEdges(ArrayList<Edge> edges) {
+		ownParts();
 		this.edges.addAll(edges);
+		for (Edge edge: edges) {
+			addToEdgeAggregates(edge);
+		}
 	}
 	
 	public void addEdge(Edge edge) {
+		ownParts();
 		this.edges.add(edge);
+		addToEdgeAggregates(edge);
+	}
+	
+	/**
+	 * Removes the edges of flow from this activation.
+	 * 
+	 * @param flow
+	 */
+	public void removeEdgesOfFlow(String flow) {
+		ownParts();
+		if (edges.removeIf(edge -> edge.getFlow().equals(flow))) {
+			resetEdgeAggregates();
+			for (Edge edge: edges) {
+				addToEdgeAggregates(edge);
+			}
+		}
+	}
+	
+	private void resetEdgeAggregates() {
+		minPeriod = Integer.MAX_VALUE;
+		minDeadline = Integer.MAX_VALUE;
+		minPriority = Integer.MAX_VALUE;
+		maxNumTx = 0;
+	}
+	
+	private void addToEdgeAggregates(Edge edge) {
+		minPeriod = Math.min(minPeriod, edge.getPeriod());
+		minDeadline = Math.min(minDeadline, edge.getDeadline());
+		minPriority = Math.min(minPriority, edge.getPriority());
+		maxNumTx = Math.max(maxNumTx, edge.getNumTx());
 	}
 	
 	public ArrayList<Edge> getEdges() {
@@ -121,29 +199,30 @@ public class Activation extends SchedulableObject implements Comparable<Activati
 	 * The release time of the element is equal to the
 	 * edge priority with the earliest release time.
 	 * Thus, it can change dynamically. <br>
+	 * 
+	 * The period, deadline and priority are the minimums over 
+	 * the edges, which are kept as the edges are added. The edge
+	 * with the earliest release time is found while updating the 
+	 * edge release times. Ties go to the first such edge, which is
+	 * the head of getEdgesByReleaseTime().
 	 */
 	public void updatePriorityAndRelease(Integer currentTime) {
 		var lastUpdateTime = getLastUpdateTime();
 		if (currentTime >= lastUpdateTime) {
+			/* get the edge with earliest release time and 
+			 * highest priority 
+			 */
+			Edge firstEdge = null;
 			for(Edge edge: edges) {
 				edge.setNextReleaseTime(currentTime);
+				if (firstEdge == null || RELEASE_ORDER.compare(edge, firstEdge) < 0) {
+					firstEdge = edge;
+				}
 			}
-			
-			/* get the edges with earliest release time and 
-			 * highest priority ==> get head of the queue just built
-			 */
-			var edgesByReleaseTime = getEdgesByReleaseTime();
-			var firstEdge = edgesByReleaseTime.element();
 			setPhase(firstEdge.getPhase()); 
-			var edgesByPeriod = getEdgesByPeriod();
-			firstEdge = edgesByPeriod.element();
-			setPeriod(firstEdge.getPeriod()); // shortest period 
-			var edgesByDeadline = getEdgesByDeadline();
-			firstEdge = edgesByDeadline.element();
-			setDeadline(firstEdge.getDeadline()); // earliest deadline
-			var edgesByPrioriy = getEdgesByPriority();
-			firstEdge = edgesByPrioriy.element();
-			setPriority(firstEdge.getPriority());
+			setPeriod(minPeriod); // shortest period 
+			setDeadline(minDeadline); // earliest deadline
+			setPriority(minPriority);
 			
 			/* With the partition scheduling parameters set to match  
 			 * the highest priority edge with respect to the parameter, 
@@ -170,29 +249,94 @@ public class Activation extends SchedulableObject implements Comparable<Activati
 	}
 
 	public void addConflict(String name) {
+		ownParts();
     	conflicts.add(name);
     }
 	
 	public void addConflicts(Set<String> conflicts) {
+		ownParts();
 		this.conflicts.addAll(conflicts);
 	}
 	
+	/**
+	 * @return the ids of the nodes in conflicts
+	 */
+	public BitSet getConflictIds() {
+		return conflictIds;
+	}
+
+	/**
+	 * @param conflictIds the conflict ids to set
+	 */
+	public void setConflictIds(BitSet conflictIds) {
+		this.conflictIds = conflictIds;
+	}
+
+	public void addConflictIds(BitSet conflictIds) {
+		ownParts();
+		this.conflictIds.or(conflictIds);
+	}
+	
 	public void addCoordinator(String coordinator) {
+		ownParts();
 		coordinators.add(coordinator);
+		coordinatorIds.add(Node.UNKNOWN_ID);
+	}
+	
+	/**
+	 * Adds node as a coordinator, recording both its name and id.
+	 * 
+	 * @param node the coordinator
+	 */
+	public void addCoordinator(Node node) {
+		ownParts();
+		coordinators.add(node.getName());
+		coordinatorIds.add(node.getId());
 	}
 	
 	public ArrayList<String> getCoordinators() {
 		return coordinators;
 	}
 
+	/**
+	 * @return the first coordinator, which is the coordinator 
+	 * another activation must have to be combined with this one
+	 */
+	public String getFirstCoordinator() {
+		return coordinators.get(0);
+	}
+
+	/**
+	 * @return true if coordinator is one of the coordinators
+	 */
+	public Boolean hasCoordinator(String coordinator) {
+		return coordinators.contains(coordinator);
+	}
+
+	/**
+	 * @return the coordinator ids, in the same order as the coordinators
+	 */
+	public ArrayList<Integer> getCoordinatorIds() {
+		return coordinatorIds;
+	}
+
+	public void addCoordinators(Activation activation) {
+		ownParts();
+		this.coordinators.addAll(activation.getCoordinators());
+		this.coordinatorIds.addAll(activation.getCoordinatorIds());
+	}
+
 	public void addCoordinators(ArrayList<String> coordinators) {
-		this.coordinators.addAll(coordinators);
+		for (String coordinator: coordinators) {
+			addCoordinator(coordinator);
+		}
 	}
 	
 	/**
 	 * @param additionalScheduleTimes
 	 */
 	public void addScheduleTimes(ArrayList<ScheduleTime> scheduleTime) {
+		ownParts();
 		this.additionalScheduleTimes.addAll(scheduleTime);
 	}
 	
@@ -304,7 +448,7 @@ public class Activation extends SchedulableObject implements Comparable<Activati
 		return nextEndTime;
 	}
 	
-	public Integer getNumEdges() {
+	public int getNumEdges() {
 		return edges.size();
 	}
 	
@@ -313,30 +457,25 @@ public class Activation extends SchedulableObject implements Comparable<Activati
 		return priorityComparison(obj);
 	}
 	
+	/**
+	 * Conflicts exist if the two activations have a conflicting
+	 * node in common. The conflict ids mirror the conflict names
+	 * as a bitmask over the node ids, so the test is a word-wise
+	 * AND of the two bitmasks, with no copying.
+	 *
+	 * @param obj
+	 * @return true if the conflict sets intersect
+	 */
 	public Boolean conflictExists(Activation obj) {
-		Boolean result = false;
-		/* create a copy of this.conflicts and obj.conflicts
-		 * and then check the intersection of the two 
-		 * sets. 
-		 * Conflicts exists if |intersection| > 0
-		 */
-		var conflicts = new HashSet<String>();
-		conflicts.addAll(getConflicts());
-		var objConflicts = new HashSet<String>();
-		objConflicts.addAll(obj.getConflicts());
-		conflicts.retainAll(objConflicts); // get the intersection
-		if (conflicts.size() > 0) {
-			result = true; // |intersection| > 0 => conflict
-		}
-		return result;
+		return getConflictIds().intersects(obj.getConflictIds());
 	}
 	
 	public Boolean canCombine(Activation a2) {
 		Boolean result = false;
 		/* make sure a2 is not null */
 		if (a2 != null) {
-			var newEntryCoordinator = a2.getCoordinators().get(0);
-			if (getCoordinators().contains(newEntryCoordinator)) {
+			var newEntryCoordinator = a2.getFirstCoordinator();
+			if (hasCoordinator(newEntryCoordinator)) {
 				/* The (first) coordinator of the newEntry
 				 * is in the list of coordinators of the prior entry.
 				 * Thus, these two can be combined for efficiency.
@@ -352,15 +491,11 @@ public class Activation extends SchedulableObject implements Comparable<Activati
 	 * needed on any link in activation to ensure e2e 
 	 * reliability is met.
 	 */
-	public Integer getDelta() {
-		Integer maxTxPerLink = 0;
-		for (Edge edge: getEdges()) {
-			maxTxPerLink = Math.max(maxTxPerLink, edge.getNumTx());
-		}
-		return maxTxPerLink;
+	public int getDelta() {
+		return maxNumTx;
 	}
 
-	public Integer getExecutionDuration() {
+	public int getExecutionDuration() {
 		/* Each edge requires delta time units. However, assuming 
 		 * the WARP pipeline scheduling approach, the activation only
 		 * executes for Delta + (numEdges - 1) time units, because
@@ -370,7 +505,7 @@ public class Activation extends SchedulableObject implements Comparable<Activati
 		return getDelta() + (getNumEdges() - 1);
 	}
 
-	public Integer getCombinedExecutionDuration(Activation a2) {
+	public int getCombinedExecutionDuration(Activation a2) {
 		/* Each edge requires delta time units. However, assuming 
 		 * the WARP pipeline scheduling approach, the activation only
 		 * executes for Delta + (numEdges - 1) time units, because
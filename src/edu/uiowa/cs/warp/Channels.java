@@ -1,74 +1,143 @@
 package edu.uiowa.cs.warp;
 
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /**
+ * Channels tracks the channels available in each time slot of a schedule. The set of channels
+ * available in a time slot is a bitmask, where bit c is set when channel c is available. The
+ * masks for all time slots are stored in a primitive array that grows with the schedule, so at
+ * most 64 channels are supported (the command line allows 16).
+ *
  * @author sgoddard
  * @version 1.4
  *
  */
 public class Channels {
 
-
-  private class ChannelSet extends HashSet<String> {
-    private static final long serialVersionUID = 6725256944325470867L;
-
-    // default constructor
-    private ChannelSet() {
-      super();
-    }
-
-    private ChannelSet(Integer nChannels) {
-      super();
-      for (int i = 0; i < nChannels; i++) { // ASSUMES channels range from 0 to nChannels-1
-        this.add(String.valueOf(i));
-      }
-    }
-  }
-
+  private static final int INITIAL_NUM_TIME_SLOTS = 64;
+  public static final int MAX_CHANNELS = Long.SIZE;
+  public static final int UNKNOWN = -1; // returned when no channel is available
 
   Integer nChannels; // size of the full set of channels
   Boolean verbose;
-  ArrayList<ChannelSet> channelsAvailable; // ArrayList to hold channels available in each time slot
+  private final long allChannels; // mask with all nChannels channels available
+  private long[] channelsAvailable; // channel mask for each time slot
+  private int numTimeSlots; // number of time slots with a channel mask
 
   Channels(Integer nChannels, Boolean verbose) {
+    if (nChannels > MAX_CHANNELS) {
+      throw new IllegalArgumentException(
+          String.format("%d channels requested, but at most %d are supported", nChannels,
+              MAX_CHANNELS));
+    }
     this.nChannels = nChannels;
     this.verbose = verbose;
-    this.channelsAvailable = new ArrayList<ChannelSet>();
+    // ASSUMES channels range from 0 to nChannels-1
+    this.allChannels = (nChannels == MAX_CHANNELS) ? -1L : (1L << nChannels) - 1;
+    this.channelsAvailable = new long[INITIAL_NUM_TIME_SLOTS];
+    this.numTimeSlots = 0;
   }
 
-  public HashSet<String> getChannelSet(Integer timeSlot) {
-    /* get the channel set for this timeSlot */
-    HashSet<String> channelSet = new HashSet<String>(channelsAvailable.get(timeSlot));
-    return channelSet;
+  /**
+   * Returns the channel mask with only channel set, or an empty mask if channel is not one of
+   * the channels 0..nChannels-1.
+   *
+   * @param channel the channel
+   * @return the channel mask for channel
+   */
+  public long channelMask(int channel) {
+    return (channel >= 0 && channel < nChannels) ? 1L << channel : 0L;
   }
 
+  /**
+   * Adds a time slot with all channels available to the end of the schedule.
+   */
   public void addNewChannelSet() {
-    var channels = new ChannelSet(nChannels);
-    channelsAvailable.add(channels);
+    if (numTimeSlots == channelsAvailable.length) {
+      channelsAvailable = Arrays.copyOf(channelsAvailable, channelsAvailable.length * 2);
+    }
+    channelsAvailable[numTimeSlots++] = allChannels;
   }
 
+  public Integer getNumTimeSlots() {
+    return numTimeSlots;
+  }
 
   public Boolean isEmpty(int timeSlot) {
-    ChannelSet channelSet = channelsAvailable.get(timeSlot); // get the channel set for this
-                                                             // timeSlot
-    return channelSet.isEmpty(); // returns true channel set is empty and false if not
+    return channelsAvailable[timeSlot] == 0; // returns true channel set is empty and false if not
   }
 
-  public Boolean removeChannel(int timeSlot, String channel) {
-    Boolean result;
-    ChannelSet channels = channelsAvailable.get(timeSlot);
-    result = channels.remove(channel);
-    return result;
+  /**
+   * @param timeSlot the time slot
+   * @return the number of channels available in timeSlot
+   */
+  public Integer getNumAvailable(int timeSlot) {
+    return Long.bitCount(channelsAvailable[timeSlot]);
   }
 
-  public Boolean addChannel(int timeSlot, String channel) {
-    Boolean result;
-    ChannelSet channels = channelsAvailable.get(timeSlot); // get a pointer to the channel set
-    result = channels.add(channel); // remove the channel, returning the result
-    return result;
+  public Boolean isAvailable(int timeSlot, int channel) {
+    return (channelsAvailable[timeSlot] & channelMask(channel)) != 0;
+  }
+
+  public Boolean removeChannel(int timeSlot, int channel) {
+    var result = isAvailable(timeSlot, channel);
+    channelsAvailable[timeSlot] &= ~channelMask(channel);
+    return result; // true if the channel was available
+  }
+
+  /**
+   * Makes every channel available in timeSlot except the channels in used. This records the
+   * channels of a time slot when its instructions are written, so channels a flow stops using are
+   * returned to the time slot.
+   *
+   * @param timeSlot the time slot
+   * @param used mask of the channels used in timeSlot
+   */
+  public void setChannelsUsed(int timeSlot, long used) {
+    channelsAvailable[timeSlot] = allChannels & ~used;
+  }
+
+  public Boolean addChannel(int timeSlot, int channel) {
+    var result = !isAvailable(timeSlot, channel) && channelMask(channel) != 0;
+    channelsAvailable[timeSlot] |= channelMask(channel);
+    return result; // true if the channel was not already available
+  }
+
+  /**
+   * Returns the first channel available in timeSlot and not in excluded, searching cyclically
+   * from firstChannel: firstChannel, firstChannel+1, ..., nChannels-1, 0, ..., firstChannel-1.
+   * The channel is not removed from the time slot.
+   *
+   * @param timeSlot the time slot
+   * @param firstChannel the first channel to consider; 0 is used if it is not a valid channel
+   * @param excluded mask of channels that can't be used
+   * @return the channel found, or UNKNOWN if no channel is available
+   */
+  public Integer nextAvailableChannel(int timeSlot, int firstChannel, long excluded) {
+    return nextChannel(firstChannel, excluded | ~channelsAvailable[timeSlot]);
+  }
+
+  /**
+   * Returns the first channel not in excluded, searching cyclically from firstChannel, whether or
+   * not it is available in any time slot.
+   *
+   * @param firstChannel the first channel to consider; 0 is used if it is not a valid channel
+   * @param excluded mask of channels that can't be used
+   * @return the channel found, or UNKNOWN if every channel is excluded
+   */
+  public Integer nextChannel(int firstChannel, long excluded) {
+    var start = (firstChannel >= 0 && firstChannel < nChannels) ? firstChannel : 0;
+    var candidates = allChannels & ~excluded;
+    var channel = UNKNOWN;
+    if (candidates != 0) {
+      var wrapped = candidates & (-1L << start); // channels at or after start
+      if (wrapped == 0) {
+        wrapped = candidates; // none, so wrap around to channel 0
+      }
+      channel = Long.numberOfTrailingZeros(wrapped);
+    }
+    return channel;
   }
 
   public Integer getNumChannels() {
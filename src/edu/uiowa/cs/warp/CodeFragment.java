@@ -1,18 +1,99 @@
 package edu.uiowa.cs.warp;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 public class CodeFragment {
 	
+	/**
+	 * Action is what a code fragment does in one time slot: the 
+	 * coordinator's instruction and the program columns (node ids)
+	 * of the coordinator and of the listeners, the nodes that wait 
+	 * on the fragment's channel for the coordinator's transmissions.
+	 */
+	public static final class Action {
+		private final Instruction instruction;
+		private final int coordinatorColumn;
+		private final int[] listenerColumns;
+
+		private Action(Instruction instruction, int coordinatorColumn, 
+				int[] listenerColumns) {
+			this.instruction = instruction;
+			this.coordinatorColumn = coordinatorColumn;
+			this.listenerColumns = listenerColumns;
+		}
+
+		public Instruction getInstruction() {
+			return instruction;
+		}
+
+		public int getCoordinatorColumn() {
+			return coordinatorColumn;
+		}
+
+		/**
+		 * @return the (shared, read-only) distinct listener columns, 
+		 * in clause order
+		 */
+		public int[] getListenerColumns() {
+			return listenerColumns;
+		}
+	}
+	
+	/**
+	 * Cache is a cache of code fragments keyed by their signature:
+	 * the fragment's edges in priority order, delta and coordinator.
+	 * The instances of an activation in each period of a hyperperiod
+	 * have the same signature, so their code is only generated once.
+	 * The channel is filled in when a fragment is taken from the
+	 * cache.
+	 */
+	public static final class Cache {
+		private final HashMap<List<Object>, CodeFragment> templates = 
+				new HashMap<List<Object>, CodeFragment>();
+		private final PrintStream err;
+
+		/**
+		 * @param err the stream that fragments with different 
+		 * coordinators are reported to
+		 */
+		public Cache(PrintStream err) {
+			this.err = err;
+		}
+
+		/**
+		 * @return the code fragment that new CodeFragment(delta, 
+		 * edges, coordinators, channel) generates
+		 */
+		public CodeFragment get(Integer delta, ArrayList<Edge> edges,
+				ArrayList<String> coordinators, Integer channel) {
+			var orderedEdges = orderEdges(edges);
+			var coordinator = coordinators.get(0);
+			var key = List.<Object>of(delta, coordinator, orderedEdges);
+			var template = templates.get(key);
+			if (template == null) {
+				template = new CodeFragment(delta, orderedEdges, coordinator, channel);
+				templates.put(key, template);
+			}
+			var fragment = template.onChannel(channel);
+			if (fragment.multipleCoordinators(coordinators)) {
+				fragment.reportIfDifferentCoordinators(coordinators, err);
+			}
+			return fragment;
+		}
+	}
 	
-	private static final String SLEEP = "sleep";
-	ArrayList<Edge> edges;
+	ArrayList<Edge> edges; // in priority order
 	String coordinator;
-	ArrayList<String> codeFragment;
+	ArrayList<Instruction> codeFragment;
+	ArrayList<Action> actions;
 	Integer delta;
 	Integer channel;
+	/* copies of this fragment on other channels */
+	HashMap<Integer, CodeFragment> channelCopies;
 	
 	/**
 	 * Constructor generates a SLEEP instruction for the
@@ -23,8 +104,9 @@ public class CodeFragment {
 		this.channel = 0;
 		this.edges = null;
 		this.coordinator = null;
-		this.codeFragment = new ArrayList<String>();
-		this.codeFragment.add(SLEEP);
+		this.codeFragment = new ArrayList<Instruction>();
+		this.codeFragment.add(Instruction.sleep());
+		this.actions = new ArrayList<Action>();
 	}
 	
 	/**
@@ -41,15 +123,67 @@ public class CodeFragment {
 	 */
 	CodeFragment(Integer delta, ArrayList<Edge> edges,
 			ArrayList<String> coordinators, Integer channel) {
-		this.delta = delta;
-		this.channel = channel;
-		this.edges = edges;
-		this.coordinator = coordinators.get(0);
-		this.codeFragment = new ArrayList<String>();
+		this(delta, orderEdges(edges), coordinators.get(0), channel);
 		if (multipleCoordinators(coordinators)) {
-			reportIfDifferentCoordinators(coordinators);
+			reportIfDifferentCoordinators(coordinators, System.err);
 		}	
+	}
+	
+	private CodeFragment(Integer delta, ArrayList<Edge> orderedEdges,
+			String coordinator, Integer channel) {
+		this.delta = delta;
+		this.channel = channel;
+		this.edges = orderedEdges;
+		this.coordinator = coordinator;
+		this.codeFragment = new ArrayList<Instruction>();
 		generateCodeFragment();
+		this.actions = generateActions();
+	}
+	
+	/*
+	 * Constructor that copies fragment onto channel.
+	 */
+	private CodeFragment(CodeFragment fragment, Integer channel) {
+		this.delta = fragment.delta;
+		this.channel = channel;
+		this.edges = fragment.edges;
+		this.coordinator = fragment.coordinator;
+		this.codeFragment = new ArrayList<Instruction>(fragment.size());
+		this.actions = new ArrayList<Action>(fragment.size());
+		for (Action action: fragment.actions) {
+			var instr = action.instruction.onChannel(channel);
+			codeFragment.add(instr);
+			actions.add(new Action(instr, action.coordinatorColumn, 
+					action.listenerColumns));
+		}
+	}
+	
+	/*
+	 * Returns this fragment with its instructions on channel,
+	 * copying it the first time channel is requested.
+	 */
+	private CodeFragment onChannel(Integer channel) {
+		if (channel.equals(this.channel)) {
+			return this;
+		}
+		if (channelCopies == null) {
+			channelCopies = new HashMap<Integer, CodeFragment>();
+		}
+		return channelCopies.computeIfAbsent(channel, 
+				c -> new CodeFragment(this, c));
+	}
+	
+	/*
+	 * Returns edges in priority order, breaking ties on release time.
+	 */
+	private static ArrayList<Edge> orderEdges(ArrayList<Edge> edges) {
+		var edgeQueue = new SchedulableObjectQueue<Edge>(new 
+				PriorityComparator<Edge>(), edges);
+		var orderedEdges = new ArrayList<Edge>(edgeQueue.size());
+		while (!edgeQueue.isEmpty()) {
+			orderedEdges.add(edgeQueue.poll());
+		}
+		return orderedEdges;
 	}
 	
 	/**
@@ -62,10 +196,21 @@ public class CodeFragment {
 	/**
 	 * @return the codeFragment
 	 */
-	public ArrayList<String> instructions() {
+	public ArrayList<Instruction> instructions() {
 		return codeFragment;
 	}
 
+	/**
+	 * Returns the action of each instruction, in the same order as
+	 * instructions(). A sleep fragment has no actions, because the
+	 * program is already asleep there.
+	 * 
+	 * @return the actions
+	 */
+	public ArrayList<Action> actions() {
+		return actions;
+	}
+
 	/**
 	 * @return the size
 	 */
@@ -75,20 +220,16 @@ public class CodeFragment {
 	
 	
 	private void generateCodeFragment () {
-		var edgeQueue = new SchedulableObjectQueue<Edge>(new 
-				PriorityComparator<Edge>(),this.edges);
-		Iterator<Edge> q = edgeQueue.iterator();
-		var size = edgeQueue.size();
+		var size = edges.size();
 		/* the code length will be equal to 
 		 * delta + #edges -1
 		 */
 		var codeLength = delta + size -1;
-		var basicInstructions = new ArrayList<String>();
+		var basicInstructions = new ArrayList<Instruction>();
 		/* create basic instructions for each edge 
 		 * and initial receiver set for each instruction
 		 * */
-		while(q.hasNext()) {
-			var edge = edgeQueue.poll();
+		for (Edge edge: edges) {
 			var src = edge.getSrc();
 			var snk = edge.getSnk();
 			var flow = edge.getFlow();
@@ -109,12 +250,11 @@ public class CodeFragment {
 		
 		/* build the initial code fragment */
 		Integer localDelta = Math.min(size, delta);
-		var instr = new String();
-		var dropInstr = new String();
-		var priorInstr = new String();
+		Instruction instr;
+		Instruction dropInstr;
+		Instruction priorInstr;
 		for (int i = 1; i < localDelta ; i++) { 
-			instr = codeFragment.get(i-1) +
-					" else " + basicInstructions.get(i);
+			instr = codeFragment.get(i-1).orElse(basicInstructions.get(i));
 			codeFragment.add(instr);
 		}
 		/* now repeat middle stage if size < delta 
@@ -140,9 +280,9 @@ public class CodeFragment {
 		 */
 		for (int i = localDelta + numRepeatStages; (i < numRepeatStages + size)  && i < codeLength ; i++) { 
 			priorInstr = codeFragment.get(i-1);
-			dropInstr =  basicInstructions.get(i-(localDelta + numRepeatStages)) + " else ";
-			instr = priorInstr.replaceFirst(Pattern.quote(dropInstr),"");
-			instr += " else " + basicInstructions.get(i-numRepeatStages);
+			dropInstr =  basicInstructions.get(i-(localDelta + numRepeatStages));
+			instr = priorInstr.dropFirst(dropInstr);
+			instr = instr.orElse(basicInstructions.get(i-numRepeatStages));
 			codeFragment.add(instr);
 		}
 		/* Now loop through dropping old instructions, draining
@@ -150,55 +290,61 @@ public class CodeFragment {
 		 */
 		for (int i = numRepeatStages + size; i < codeLength ; i++) { 
 			priorInstr = codeFragment.get(i-1);
-			dropInstr =  basicInstructions.get(i-delta)  + " else ";
-			instr = priorInstr.replaceFirst(Pattern.quote(dropInstr),"");
+			dropInstr =  basicInstructions.get(i-delta);
+			instr = priorInstr.dropFirst(dropInstr);
 			codeFragment.add(instr);
 		}
 	}
 	
-	private String getBaseInstruction(String flow, String src, String snk) {
-		var instr = new String();
+	/*
+	 * Resolves the coordinator and listeners of each instruction to 
+	 * their program columns, which are the node ids on the edges.
+	 */
+	private ArrayList<Action> generateActions() {
+		var nodeIds = new HashMap<String, Integer>();
+		for (Edge edge: edges) {
+			nodeIds.put(edge.getSrc(), edge.getSrcId());
+			nodeIds.put(edge.getSnk(), edge.getSnkId());
+		}
+		int coordinatorColumn = nodeIds.get(coordinator);
+		var result = new ArrayList<Action>(codeFragment.size());
+		var listeners = new LinkedHashSet<Integer>();
+		for (Instruction instr: codeFragment) {
+			listeners.clear();
+			for (var clause = instr; clause != null; clause = clause.getElse()) {
+				var listener = clause.getListener();
+				if (listener != null) {
+					listeners.add(nodeIds.get(listener));
+				}
+			}
+			var listenerColumns = listeners.stream().mapToInt(Integer::intValue).toArray();
+			result.add(new Action(instr, coordinatorColumn, listenerColumns));
+		}
+		return result;
+	}
+	
+	private Instruction getBaseInstruction(String flow, String src, String snk) {
+		Instruction instr;
 		if (coordinator.equals(src)) {
 			/* push instruction */
-			instr += ifHas(flow,src,snk) + push(flow,src,snk);
+			instr = Instruction.push(flow, src, snk, channel).ifHasEdge();
 		} else {
 			/* pull instruction */
-			instr += ifNotHas(flow,src,snk) + pull(flow,src,snk);
+			instr = Instruction.pull(flow, src, snk, channel).ifNotHasEdge();
 		}
 		return instr;
 	}
 	
-	private String push(String flow, String src, String snk) {
-		var instruction = String.format("push(%s: %s -> %s, #%d)", flow, src, snk, channel);
-		return instruction;
-	}
-	
-	private String pull(String flow, String src, String snk) {
-		var instruction = String.format("pull(%s: %s -> %s, #%d)", flow, src, snk, channel);
-		return instruction;
-	}
-	
-	private String ifHas(String flow, String src, String snk) {
-		var instruction = String.format("if has(%s: %s -> %s) ", flow, src, snk);
-		return instruction;
-	}
-	
-	private String ifNotHas(String flow, String src, String snk) {
-		var instruction = String.format("if !has(%s: %s -> %s) ", flow, src, snk);
-		return instruction;
-	}
-	
-	public String wait(int channel) {
-		var instruction = String.format("wait(#%d)", channel);
-		return instruction;
+	public Instruction wait(int channel) {
+		return Instruction.wait(channel);
 	}
 	
-	public static String sleep() {
-		var instruction = SLEEP;
-		return instruction;
+	public static Instruction sleep() {
+		return Instruction.sleep();
 	}
 	
-	private void reportIfDifferentCoordinators(ArrayList<String> coordinators) {
+	private void reportIfDifferentCoordinators(ArrayList<String> coordinators,
+			PrintStream err) {
 		var numUniqueCoordinators = 1;
 		var coordinatorNames = this.coordinator;
 		if (coordinators.size() > 1) {
@@ -209,7 +355,7 @@ public class CodeFragment {
 				}
 			}
 			if (numUniqueCoordinators > 1) {
-				System.err.printf("\n%d Coordinators: %s\n", 
+				err.printf("\n%d Coordinators: %s\n", 
 						numUniqueCoordinators, this.coordinator, coordinatorNames);
 			}
 		}
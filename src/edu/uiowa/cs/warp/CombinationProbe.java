@@ -0,0 +1,82 @@
+package edu.uiowa.cs.warp;
+
+import java.util.BitSet;
+
+/**
+ * CombinationProbe stands in for the CombinedActivation of a schedule
+ * entry and an activation while a Schedule checks if the combination
+ * is available. It answers what the check asks of the combination--its
+ * first coordinator, coordinators, delta, number of edges and conflict
+ * ids--from the two activations, rather than copying their edges,
+ * coordinators and conflicts. <br>
+ *
+ * A Schedule keeps one probe for each level of nested combination
+ * and reuses it for every check, so checking a combination doesn't
+ * allocate. A probe is never added to the schedule.
+ *
+ * @author agent
+ *
+ */
+final class CombinationProbe extends Activation {
+
+	private static final String NAME = "probe";
+
+	private final int depth; // number of probes nested in this one
+	private final BitSet conflictIds;
+	private Activation entry;
+	private Activation next;
+
+	CombinationProbe(int depth) {
+		super(NAME);
+		this.depth = depth;
+		this.conflictIds = new BitSet();
+	}
+
+	/**
+	 * Sets this probe to the combination of entry and next.
+	 *
+	 * @param entry the entry in the schedule
+	 * @param next the activation combined with entry
+	 * @return this probe
+	 */
+	CombinationProbe combine(Activation entry, Activation next) {
+		this.entry = entry;
+		this.next = next;
+		conflictIds.clear();
+		conflictIds.or(entry.getConflictIds());
+		conflictIds.or(next.getConflictIds());
+		return this;
+	}
+
+	/**
+	 * @return the number of probes nested in this one
+	 */
+	int getDepth() {
+		return depth;
+	}
+
+	@Override
+	public String getFirstCoordinator() {
+		return entry.getFirstCoordinator();
+	}
+
+	@Override
+	public Boolean hasCoordinator(String coordinator) {
+		return entry.hasCoordinator(coordinator) || next.hasCoordinator(coordinator);
+	}
+
+	@Override
+	public int getDelta() {
+		return Math.max(entry.getDelta(), next.getDelta());
+	}
+
+	@Override
+	public int getNumEdges() {
+		return entry.getNumEdges() + next.getNumEdges();
+	}
+
+	@Override
+	public BitSet getConflictIds() {
+		return conflictIds;
+	}
+}
@@ -7,7 +7,7 @@ public class CombinedActivation extends Activation implements Comparable<Activat
 		super(name);
 	}
 			
-	CombinedActivation(Activation elem, Integer time) {
+	CombinedActivation(Activation elem, int time) {
 		super(elem, time);	
 	} 
 	
@@ -29,8 +29,9 @@ public class CombinedActivation extends Activation implements Comparable<Activat
 		var startTime = Math.min(priorEntry.getStartTime(), next.getStartTime());
 		this.setStartTime(startTime);
 		this.addEdges(next.getEdges());
-		this.addCoordinators(next.getCoordinators());
+		this.addCoordinators(next);
 		this.addConflicts(next.getConflicts());
+		this.addConflictIds(next.getConflictIds());
 		
 	}
 
@@ -39,8 +40,8 @@ public class CombinedActivation extends Activation implements Comparable<Activat
 		Boolean result = false;
 		/* make sure a2 is not null */
 		if (a2 != null) {
-			var newEntryCoordinator = a2.getCoordinators().get(0);
-			if (getCoordinators().contains(newEntryCoordinator)) {
+			var newEntryCoordinator = a2.getFirstCoordinator();
+			if (hasCoordinator(newEntryCoordinator)) {
 				/* The (first) coordinator of the newEntry
 				 * is in the list of coordinators of the prior entry.
 				 * Thus, these two can be combined for efficiency 
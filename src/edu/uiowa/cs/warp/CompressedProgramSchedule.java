@@ -0,0 +1,285 @@
+package edu.uiowa.cs.warp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * CompressedProgramSchedule is an immutable, compressed copy of a
+ * ProgramSchedule. Programs are highly periodic: each flow instance
+ * repeats every period, and most of the table is runs of sleep. So,
+ * each node's column is stored as runs of identical instructions,
+ * and if the column repeats with a period that divides the schedule
+ * length, only the runs of the first period are stored. Identical
+ * columns, such as nodes that always sleep, share the same runs.
+ * Memory is therefore proportional to the number of distinct runs
+ * rather than to the length of the hyperperiod.
+ *
+ * get(row, column) is a binary search over the runs of the column,
+ * and iterator() streams the time slots in order without searching.
+ * Any attempt to modify the schedule, through any List method,
+ * throws an UnsupportedOperationException. To keep a program that
+ * is no longer changing, use new CompressedProgramSchedule(schedule).
+ *
+ * @author agent
+ *
+ */
+public class CompressedProgramSchedule extends VirtualProgramSchedule {
+
+	private static final long serialVersionUID = 1L;
+	private static final String IMMUTABLE = "CompressedProgramSchedule is immutable";
+
+	private final int numRows;
+	private final int numColumns;
+	private final Column[] columns;
+
+	/**
+	 * The runs of one column. Run i starts at row starts[i] and
+	 * holds values[i] until the next run starts. The runs cover
+	 * rows 0 to period-1, and the column repeats every period rows.
+	 */
+	private static final class Column {
+		private final int period;
+		private final int[] starts;
+		private final Instruction[] values;
+
+		private Column(int period, int[] starts, Instruction[] values) {
+			this.period = period;
+			this.starts = starts;
+			this.values = values;
+		}
+
+		private int run(int row) {
+			var i = Arrays.binarySearch(starts, row % period);
+			return (i >= 0) ? i : -i - 2; // run that contains the row
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			var result = false;
+			if (this == obj) {
+				result = true;
+			} else if (obj instanceof Column) {
+				var other = (Column) obj;
+				result = period == other.period && Arrays.equals(starts, other.starts)
+						&& Arrays.equals(values, other.values);
+			}
+			return result;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * period + Arrays.hashCode(starts)) + Arrays.hashCode(values);
+		}
+	}
+
+	/**
+	 * Creates a compressed copy of schedule. Later changes to schedule
+	 * are not reflected in the copy.
+	 *
+	 * @param schedule the schedule to compress
+	 */
+	public CompressedProgramSchedule(ProgramSchedule schedule) {
+		super();
+		this.numRows = schedule.getNumRows();
+		this.numColumns = schedule.getNumColumns();
+		this.columns = new Column[numColumns];
+		var divisors = divisors(numRows);
+		var sharedColumns = new HashMap<Column, Column>();
+		for (int column = 0; column < numColumns; column++) {
+			var compressed = compressColumn(schedule, column, divisors);
+			var shared = sharedColumns.putIfAbsent(compressed, compressed);
+			columns[column] = (shared != null) ? shared : compressed;
+		}
+	}
+
+	@Override
+	public int size() {
+		return numRows;
+	}
+
+	@Override
+	public Integer getNumColumns() {
+		return numColumns;
+	}
+
+	/**
+	 * @return the number of runs stored, which is a measure of the
+	 * memory used by this schedule
+	 */
+	public Integer getNumRuns() {
+		var numRuns = 0;
+		var counted = Collections.newSetFromMap(new IdentityHashMap<Column, Boolean>());
+		for (Column column: columns) {
+			if (counted.add(column)) { // count shared columns once
+				numRuns += column.starts.length;
+			}
+		}
+		return numRuns;
+	}
+
+	/**
+	 * @param column the node
+	 * @return the number of rows after which the node's instructions repeat
+	 */
+	public Integer getPeriod(Integer column) {
+		return columns[column].period;
+	}
+
+	@Override
+	public Instruction get(Integer row, Integer column) {
+		Instruction element = null;
+		if (row < numRows && column < numColumns) {
+			var compressed = columns[column];
+			element = compressed.values[compressed.run(row)];
+		}
+		return element;
+	}
+
+	@Override
+	public InstructionTimeSlot get(int row) {
+		if (row < 0 || row >= numRows) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Index %d out of bounds for length %d", row, numRows));
+		}
+		var timeSlot = new InstructionTimeSlot();
+		for (int column = 0; column < numColumns; column++) {
+			timeSlot.add(get(row, column));
+		}
+		return timeSlot;
+	}
+
+	/**
+	 * Streams the time slots in order. Each column keeps a cursor into
+	 * its runs, so each time slot takes time proportional to the number
+	 * of columns, with no searching.
+	 */
+	@Override
+	public Iterator<InstructionTimeSlot> iterator() {
+		return new Iterator<InstructionTimeSlot>() {
+			private int row = 0;
+			private final int[] runs = new int[numColumns]; // current run of each column
+
+			@Override
+			public boolean hasNext() {
+				return row < numRows;
+			}
+
+			@Override
+			public InstructionTimeSlot next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				var timeSlot = new InstructionTimeSlot();
+				for (int column = 0; column < numColumns; column++) {
+					var compressed = columns[column];
+					var offset = row % compressed.period;
+					if (offset == 0) {
+						runs[column] = 0; // start of a new period
+					} else if (runs[column] + 1 < compressed.starts.length
+							&& compressed.starts[runs[column] + 1] == offset) {
+						runs[column]++;
+					}
+					timeSlot.add(compressed.values[runs[column]]);
+				}
+				row++;
+				return timeSlot;
+			}
+		};
+	}
+
+	@Override
+	public void set(Integer row, Integer column, Instruction element) {
+		throw unsupported();
+	}
+
+	@Override
+	public void clear() {
+		throw unsupported();
+	}
+
+	@Override
+	public void extendTo(Integer numRows) {
+		throw unsupported();
+	}
+
+	@Override
+	UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException(IMMUTABLE);
+	}
+
+	/*
+	 * Run-length encodes a column and then keeps only the runs of its
+	 * shortest period, trying the divisors of the schedule length in
+	 * ascending order.
+	 */
+	private Column compressColumn(ProgramSchedule schedule, int column, int[] divisors) {
+		var starts = new ArrayList<Integer>();
+		var values = new ArrayList<Instruction>();
+		Instruction previous = null;
+		for (int row = 0; row < numRows; row++) {
+			var element = schedule.get(row, column);
+			if (row == 0 || !Objects.equals(element, previous)) {
+				starts.add(row);
+				values.add(element);
+				previous = element;
+			}
+		}
+		var full = new Column(Math.max(numRows, 1),
+				starts.stream().mapToInt(Integer::intValue).toArray(),
+				values.toArray(new Instruction[0]));
+		var result = full;
+		for (int period: divisors) {
+			if (hasPeriod(full, period)) {
+				var numRuns = full.run(period - 1) + 1;
+				result = new Column(period, Arrays.copyOf(full.starts, numRuns),
+						Arrays.copyOf(full.values, numRuns));
+				break;
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * A column has a period if each row equals the row period rows
+	 * before it. Both sides are constant between run boundaries, so
+	 * it is enough to compare the rows at the boundaries of each side.
+	 */
+	private Boolean hasPeriod(Column full, int period) {
+		var result = true;
+		for (int i = 0; i < full.starts.length && result; i++) {
+			var start = full.starts[i];
+			if (start >= period) {
+				result = Objects.equals(full.values[i], full.values[full.run(start - period)]);
+			}
+			if (result && start + period < numRows) {
+				result = Objects.equals(full.values[full.run(start + period)], full.values[i]);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the divisors of n that are less than n, in ascending order.
+	 */
+	private static int[] divisors(int n) {
+		var small = new ArrayList<Integer>();
+		var large = new ArrayList<Integer>();
+		for (int d = 1; (long) d * d <= n; d++) {
+			if (n % d == 0) {
+				small.add(d);
+				if (d != n / d) {
+					large.add(0, n / d);
+				}
+			}
+		}
+		small.addAll(large);
+		small.remove(Integer.valueOf(n));
+		return small.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -1,5 +1,7 @@
 package edu.uiowa.cs.warp;
 
+import java.io.PrintStream;
+
 public class Edge extends SchedulableObject implements Comparable<Edge> {
 
 	private static final String UNKNOWN = "Unknown";
@@ -11,6 +13,9 @@ public class Edge extends SchedulableObject implements Comparable<Edge> {
 	private String coordinator;
 	private EdgeState state;
 	private Integer numTx;
+	private int flowId; // dense ids of flow, src, and snk in the WorkLoad
+	private int srcId;
+	private int snkId;
 
 	private enum EdgeState {
 		RELEASED, EXECUTING, NOT_READY 
@@ -25,6 +30,9 @@ public class Edge extends SchedulableObject implements Comparable<Edge> {
 		this.coordinator = UNKNOWN;
 		this.state = EdgeState.NOT_READY;
 		this.numTx = 0;
+		this.flowId = Node.UNKNOWN_ID;
+		this.srcId = Node.UNKNOWN_ID;
+		this.snkId = Node.UNKNOWN_ID;
 	}
 	
 	Edge(String flow, String src, String snk, Integer priority, 
@@ -37,6 +45,9 @@ public class Edge extends SchedulableObject implements Comparable<Edge> {
 		this.coordinator = UNKNOWN;
 		this.state = EdgeState.NOT_READY;	
 		this.numTx = numTx;
+		this.flowId = Node.UNKNOWN_ID;
+		this.srcId = Node.UNKNOWN_ID;
+		this.snkId = Node.UNKNOWN_ID;
 	}
 
 	@Override
@@ -93,6 +104,40 @@ public class Edge extends SchedulableObject implements Comparable<Edge> {
 		this.snk = snk;
 	}
 
+	/**
+	 * @return the flow id
+	 */
+	public int getFlowId() {
+		return flowId;
+	}
+
+	/**
+	 * @return the src node id
+	 */
+	public int getSrcId() {
+		return srcId;
+	}
+
+	/**
+	 * @return the snk node id
+	 */
+	public int getSnkId() {
+		return snkId;
+	}
+
+	/**
+	 * Sets the dense WorkLoad ids of this edge's flow, src, and snk.
+	 * 
+	 * @param flowId the flow id to set
+	 * @param srcId the src node id to set
+	 * @param snkId the snk node id to set
+	 */
+	public void setIds(int flowId, int srcId, int snkId) {
+		this.flowId = flowId;
+		this.srcId = srcId;
+		this.snkId = snkId;
+	}
+
 	/**
 	 * @return the instance
 	 */
@@ -143,17 +188,11 @@ public class Edge extends SchedulableObject implements Comparable<Edge> {
 	}
 
 	@Override
-	public void print(String headerMsg) {
-		System.out.printf("\n%s",headerMsg);
-		this.print();
-	}
-	
-	@Override
-	public void print() {
-		super.print();
-		System.out.printf("\tFlow:%s\n", this.flow);
-		System.out.printf("\tSrc:%s\n", this.src);
-		System.out.printf("\tSnk:%s\n", this.snk);
+	public void print(PrintStream out) {
+		super.print(out);
+		out.printf("\tFlow:%s\n", this.flow);
+		out.printf("\tSrc:%s\n", this.src);
+		out.printf("\tSnk:%s\n", this.snk);
 	}
 	
     
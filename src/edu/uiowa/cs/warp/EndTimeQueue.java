@@ -0,0 +1,111 @@
+package edu.uiowa.cs.warp;
+
+import java.util.Arrays;
+
+/**
+ * EndTimeQueue is the queue of end times a schedulable object keeps
+ * for its executions in a hyperperiod, so that successors don't start
+ * before their predecessors end. The earliest end time is at the
+ * head. The times are kept in a binary min-heap of ints, so adding,
+ * peeking and polling don't box the times, and the array only grows
+ * when the queue holds more times than ever before. <br>
+ *
+ * Copies share the array of the queue they copy until either one
+ * changes, so scheduled copies of an object don't copy its end times.
+ *
+ * @author agent
+ *
+ */
+final class EndTimeQueue {
+
+	private static final int[] NO_TIMES = new int[0];
+	private static final int INITIAL_CAPACITY = 4;
+
+	private int[] times;
+	private int size;
+	private Boolean shared;
+
+	EndTimeQueue() {
+		this.times = NO_TIMES;
+		this.size = 0;
+		this.shared = false;
+	}
+
+	/**
+	 * Constructor that copies queue.
+	 *
+	 * @param queue
+	 */
+	EndTimeQueue(EndTimeQueue queue) {
+		this.times = queue.times;
+		this.size = queue.size;
+		this.shared = size > 0;
+		queue.shared = queue.shared || shared;
+	}
+
+	/**
+	 * @return the number of end times in the queue
+	 */
+	int size() {
+		return size;
+	}
+
+	Boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds time to the queue.
+	 *
+	 * @param time
+	 */
+	void add(int time) {
+		if (shared || size == times.length) {
+			times = Arrays.copyOf(times, Math.max(INITIAL_CAPACITY,
+					size == times.length ? 2*size : times.length));
+			shared = false;
+		}
+		/* sift the new time up from the end of the heap */
+		var i = size++;
+		while (i > 0 && times[(i-1)/2] > time) {
+			times[i] = times[(i-1)/2];
+			i = (i-1)/2;
+		}
+		times[i] = time;
+	}
+
+	/**
+	 * @return the earliest end time; the queue must not be empty
+	 */
+	int peek() {
+		return times[0];
+	}
+
+	/**
+	 * Removes the earliest end time, if any.
+	 */
+	void poll() {
+		if (size > 0) {
+			if (shared) {
+				times = Arrays.copyOf(times, times.length);
+				shared = false;
+			}
+			/* sift the last time down from the root of the heap */
+			var last = times[--size];
+			var i = 0;
+			var child = 1;
+			while (child < size) {
+				if (child+1 < size && times[child+1] < times[child]) {
+					child++;
+				}
+				if (times[child] >= last) {
+					break;
+				}
+				times[i] = times[child];
+				i = child;
+				child = 2*i + 1;
+			}
+			times[i] = last;
+		}
+	}
+}
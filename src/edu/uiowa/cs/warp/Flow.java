@@ -58,6 +58,25 @@ public class Flow extends SchedulableObject implements Comparable<Flow>{
         this.edgePredecessor = null;
     }
     
+    /**
+     * Constructor that copies the parameters, nodes and link Tx costs
+     * of a finalized flow, but none of its edges or release state.
+     *
+     * @param flow The flow to copy.
+     */
+    Flow (Flow flow) {
+    	this(flow.getName(), flow.getPriority(), flow.getIndex());
+    	setPeriod(flow.getPeriod());
+    	setDeadline(flow.getDeadline());
+    	setPhase(flow.getPhase());
+    	this.initialPriority = flow.initialPriority;
+    	this.numTxPerLink = flow.numTxPerLink;
+    	this.linkTxAndTotalCost.addAll(flow.linkTxAndTotalCost);
+    	for (Node node: flow.nodes) {
+    		addNode(new Node(node));
+    	}
+    }
+
     /*
      * Constructs a default Flow.
      */
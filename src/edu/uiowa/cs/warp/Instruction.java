@@ -0,0 +1,449 @@
+package edu.uiowa.cs.warp;
+
+import java.util.Objects;
+
+/**
+ * Instruction is the typed form of a WARP DSL instruction stored in a
+ * program schedule. Each instruction is a single action--sleep, wait,
+ * push or pull--optionally guarded by a has() test and optionally
+ * followed by an else clause, which is itself an Instruction. Thus,
+ * an instruction is a chain of clauses, where the first clause is the
+ * head of the chain.
+ *
+ * Instructions are immutable, so the same object can be shared by any
+ * number of time slots and code fragments. toString() renders the
+ * exact DSL text accepted by the WARP DSL parser.
+ *
+ * @author agent
+ *
+ */
+public final class Instruction {
+
+	/**
+	 * The command executed by a single clause of an instruction.
+	 */
+	public enum Opcode {
+		SLEEP, WAIT, PUSH, PULL
+	}
+
+	/**
+	 * The condition tested before a clause's action is executed.
+	 * HAS_FLOW tests for the flow, e.g., if has(F0), while HAS_EDGE and
+	 * NOT_HAS_EDGE test for the flow edge, e.g., if has(F0: A -> B).
+	 */
+	public enum Guard {
+		NONE, HAS_FLOW, HAS_EDGE, NOT_HAS_EDGE
+	}
+
+	public static final int NO_CHANNEL = -1;
+	public static final Instruction SLEEP = new Instruction(Opcode.SLEEP,
+			Guard.NONE, null, null, null, NO_CHANNEL, null);
+
+	private final Opcode opcode;
+	private final Guard guard;
+	private final String flow;
+	private final String src;
+	private final String snk;
+	private final int channel;
+	private final Instruction elseClause;
+
+	private Instruction(Opcode opcode, Guard guard, String flow, String src,
+			String snk, int channel, Instruction elseClause) {
+		this.opcode = opcode;
+		this.guard = guard;
+		this.flow = flow;
+		this.src = src;
+		this.snk = snk;
+		this.channel = channel;
+		this.elseClause = elseClause;
+	}
+
+	/**
+	 * @return the shared sleep instruction
+	 */
+	public static Instruction sleep() {
+		return SLEEP;
+	}
+
+	/**
+	 * @param channel the channel to listen on
+	 * @return wait(#channel)
+	 */
+	public static Instruction wait(int channel) {
+		return new Instruction(Opcode.WAIT, Guard.NONE, null, null, null,
+				channel, null);
+	}
+
+	/**
+	 * @return push(flow: src -> snk, #channel)
+	 */
+	public static Instruction push(String flow, String src, String snk, int channel) {
+		return new Instruction(Opcode.PUSH, Guard.NONE, flow, src, snk,
+				channel, null);
+	}
+
+	/**
+	 * @return pull(flow: src -> snk, #channel)
+	 */
+	public static Instruction pull(String flow, String src, String snk, int channel) {
+		return new Instruction(Opcode.PULL, Guard.NONE, flow, src, snk,
+				channel, null);
+	}
+
+	/**
+	 * @return this push or pull guarded by if has(flow)
+	 */
+	public Instruction ifHas() {
+		return withGuard(Guard.HAS_FLOW);
+	}
+
+	/**
+	 * @return this push or pull guarded by if has(flow: src -> snk)
+	 */
+	public Instruction ifHasEdge() {
+		return withGuard(Guard.HAS_EDGE);
+	}
+
+	/**
+	 * @return this push or pull guarded by if !has(flow: src -> snk)
+	 */
+	public Instruction ifNotHasEdge() {
+		return withGuard(Guard.NOT_HAS_EDGE);
+	}
+
+	private Instruction withGuard(Guard newGuard) {
+		return new Instruction(opcode, newGuard, flow, src, snk, channel,
+				elseClause);
+	}
+
+	/**
+	 * Returns a new instruction with next appended as the else
+	 * clause of the last clause in this chain.
+	 *
+	 * @param next the instruction to execute when this one does not
+	 * @return this else next
+	 */
+	public Instruction orElse(Instruction next) {
+		var tail = (elseClause == null) ? next : elseClause.orElse(next);
+		return new Instruction(opcode, guard, flow, src, snk, channel, tail);
+	}
+
+	/**
+	 * Removes the first clause in the chain that matches clause and
+	 * is followed by an else clause. The chain is returned unchanged
+	 * if there is no such clause. This is how code fragments drop the
+	 * oldest clause from a pipeline stage.
+	 *
+	 * @param clause a single clause instruction
+	 * @return the chain without that clause
+	 */
+	public Instruction dropFirst(Instruction clause) {
+		Instruction result = this;
+		if (elseClause != null) {
+			if (sameClause(clause)) {
+				result = elseClause;
+			} else {
+				var rest = elseClause.dropFirst(clause);
+				if (rest != elseClause) {
+					result = new Instruction(opcode, guard, flow, src, snk,
+							channel, rest);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the chain with every clause that has a channel moved to
+	 * channel. The chain is returned unchanged if it is already there.
+	 *
+	 * @param channel the new channel
+	 * @return the chain on channel
+	 */
+	public Instruction onChannel(int channel) {
+		var rest = (elseClause == null) ? null : elseClause.onChannel(channel);
+		var newChannel = (this.channel == NO_CHANNEL) ? NO_CHANNEL : channel;
+		Instruction result = this;
+		if (newChannel != this.channel || rest != elseClause) {
+			result = new Instruction(opcode, guard, flow, src, snk, newChannel, rest);
+		}
+		return result;
+	}
+
+	/**
+	 * Removes every push and pull clause of flow from the chain. A wait
+	 * in an else clause belongs to the push or pull before it, so it
+	 * is removed along with that clause. The chain is returned
+	 * unchanged if it has no clause of flow, and sleep is returned if
+	 * no clause is left.
+	 *
+	 * @param flow the flow to remove
+	 * @return the chain without the clauses of flow
+	 */
+	public Instruction withoutFlow(String flow) {
+		var result = withoutFlow(flow, true);
+		return (result == null) ? SLEEP : result;
+	}
+
+	private Instruction withoutFlow(String flow, Boolean ownerKept) {
+		Boolean kept;
+		if (opcode == Opcode.PUSH || opcode == Opcode.PULL) {
+			kept = !Objects.equals(this.flow, flow);
+		} else {
+			kept = ownerKept; // a wait or sleep goes with the clause before it
+		}
+		var rest = (elseClause == null) ? null : elseClause.withoutFlow(flow, kept);
+		Instruction result = this;
+		if (!kept) {
+			result = rest;
+		} else if (rest != elseClause) {
+			result = new Instruction(opcode, guard, this.flow, src, snk, channel, rest);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if any clause in the chain is a push or pull of flow
+	 */
+	public Boolean hasFlow(String flow) {
+		var result = false;
+		for (var clause = this; clause != null && !result; clause = clause.elseClause) {
+			result = clause.flow != null && clause.flow.equals(flow);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the opcode of the head clause
+	 */
+	public Opcode getOpcode() {
+		return opcode;
+	}
+
+	/**
+	 * @return the guard of the head clause
+	 */
+	public Guard getGuard() {
+		return guard;
+	}
+
+	/**
+	 * @return the flow of the head clause, or null for sleep and wait
+	 */
+	public String getFlow() {
+		return flow;
+	}
+
+	/**
+	 * @return the src of the head clause, or null for sleep and wait
+	 */
+	public String getSrc() {
+		return src;
+	}
+
+	/**
+	 * @return the snk of the head clause, or null for sleep and wait
+	 */
+	public String getSnk() {
+		return snk;
+	}
+
+	/**
+	 * @return the channel of the head clause, or NO_CHANNEL for sleep
+	 */
+	public int getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return the else clause, or null when this is the last clause
+	 */
+	public Instruction getElse() {
+		return elseClause;
+	}
+
+	/**
+	 * @return the node that initiates the head clause's transmission,
+	 * or null if the head clause is not a push or pull
+	 */
+	public String getCoordinator() {
+		String coordinator = null;
+		if (opcode == Opcode.PUSH) {
+			coordinator = src;
+		} else if (opcode == Opcode.PULL) {
+			coordinator = snk;
+		}
+		return coordinator;
+	}
+
+	/**
+	 * @return the node that must wait for the head clause's transmission,
+	 * or null if the head clause is not a push or pull
+	 */
+	public String getListener() {
+		String listener = null;
+		if (opcode == Opcode.PUSH) {
+			listener = snk;
+		} else if (opcode == Opcode.PULL) {
+			listener = src;
+		}
+		return listener;
+	}
+
+	/**
+	 * @return the number of clauses in the chain
+	 */
+	public int length() {
+		var length = 0;
+		for (var clause = this; clause != null; clause = clause.elseClause) {
+			length++;
+		}
+		return length;
+	}
+
+	public Boolean isSleep() {
+		return opcode == Opcode.SLEEP;
+	}
+
+	public Boolean isWait() {
+		return opcode == Opcode.WAIT;
+	}
+
+	/**
+	 * @return true if any clause in the chain is a wait
+	 */
+	public Boolean hasWait() {
+		var result = false;
+		for (var clause = this; clause != null && !result; clause = clause.elseClause) {
+			result = clause.opcode == Opcode.WAIT;
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if any else clause in the chain is a pull
+	 */
+	public Boolean hasElsePull() {
+		var result = false;
+		for (var clause = elseClause; clause != null && !result; clause = clause.elseClause) {
+			result = clause.opcode == Opcode.PULL;
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if any clause in the chain is guarded by if has(flow)
+	 */
+	public Boolean hasFlowGuard(String flow) {
+		var result = false;
+		for (var clause = this; clause != null && !result; clause = clause.elseClause) {
+			result = clause.guard == Guard.HAS_FLOW && clause.flow.equals(flow);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if any clause in the chain is
+	 * if has(flow) push(flow: src -> snk, #c) for some channel c
+	 */
+	public Boolean hasGuardedPush(String flow, String src, String snk) {
+		var result = false;
+		for (var clause = this; clause != null && !result; clause = clause.elseClause) {
+			result = clause.guard == Guard.HAS_FLOW && clause.opcode == Opcode.PUSH
+					&& clause.isOnEdge(flow, src, snk);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if any else clause in the chain is
+	 * pull(flow: src -> snk, #channel)
+	 */
+	public Boolean hasElsePull(String flow, String src, String snk, int channel) {
+		var result = false;
+		for (var clause = elseClause; clause != null && !result; clause = clause.elseClause) {
+			result = clause.guard == Guard.NONE && clause.opcode == Opcode.PULL
+					&& clause.isOnEdge(flow, src, snk) && clause.channel == channel;
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if the head clause transmits flow over src -> snk
+	 */
+	public Boolean isOnEdge(String flow, String src, String snk) {
+		return Objects.equals(this.flow, flow) && Objects.equals(this.src, src)
+				&& Objects.equals(this.snk, snk);
+	}
+
+	private Boolean sameClause(Instruction clause) {
+		return opcode == clause.opcode && guard == clause.guard
+				&& channel == clause.channel && isOnEdge(clause.flow, clause.src, clause.snk);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		var result = false;
+		if (this == obj) {
+			result = true;
+		} else if (obj instanceof Instruction) {
+			var other = (Instruction) obj;
+			result = sameClause(other) && Objects.equals(elseClause, other.elseClause);
+		}
+		return result;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(opcode, guard, flow, src, snk, channel, elseClause);
+	}
+
+	@Override
+	public String toString() {
+		var text = new StringBuilder();
+		for (var clause = this; clause != null; clause = clause.elseClause) {
+			if (clause != this) {
+				text.append(" else ");
+			}
+			clause.appendClause(text);
+		}
+		return text.toString();
+	}
+
+	private void appendClause(StringBuilder text) {
+		switch (guard) {
+			case HAS_FLOW:
+				text.append("if has(").append(flow).append(") ");
+				break;
+			case HAS_EDGE:
+				text.append("if has(");
+				appendEdge(text);
+				text.append(") ");
+				break;
+			case NOT_HAS_EDGE:
+				text.append("if !has(");
+				appendEdge(text);
+				text.append(") ");
+				break;
+			default:
+				break;
+		}
+		switch (opcode) {
+			case SLEEP:
+				text.append("sleep");
+				break;
+			case WAIT:
+				text.append("wait(#").append(channel).append(')');
+				break;
+			default:
+				text.append(opcode == Opcode.PUSH ? "push(" : "pull(");
+				appendEdge(text);
+				text.append(", #").append(channel).append(')');
+				break;
+		}
+	}
+
+	private void appendEdge(StringBuilder text) {
+		text.append(flow).append(": ").append(src).append(" -> ").append(snk);
+	}
+}
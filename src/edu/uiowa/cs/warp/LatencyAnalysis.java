@@ -1,6 +1,5 @@
 package edu.uiowa.cs.warp;
 
-import edu.uiowa.cs.warp.WarpDSL.InstructionParameters;
 import java.util.HashMap;
 
 /**
@@ -113,8 +112,8 @@ public class LatencyAnalysis {
         numTxProcessed = 0; // num of Tx seen in the program schedule so far
         while (time < nextReleaseTime) {
           /* get instruction strings at these to locations */
-          String instr1 = programTable.get(time, srcIndex);
-          String instr2 = programTable.get(time, snkIndex);
+          Instruction instr1 = programTable.get(time, srcIndex);
+          Instruction instr2 = programTable.get(time, snkIndex);
           numTxProcessed += numMatchingTx(flowName, src, snk, instr1);
           numTxProcessed += numMatchingTx(flowName, src, snk, instr2);
           if (numTxProcessed == numTxRequired) {
@@ -162,7 +161,7 @@ public class LatencyAnalysis {
  * @param instr
  * @return
  */
-  public Integer numMatchingTx(String flow, String src, String snk, String instr) {
+  public Integer numMatchingTx(String flow, String src, String snk, Instruction instr) {
     var numTx = 0;
 
     if (flow == null || src == null || snk == null || instr == null) {
@@ -170,15 +169,11 @@ public class LatencyAnalysis {
       return numTx;
     }
     /*
-     * get a Warp instruction parser object and then get the instruction parameters from the
-     * instruction string.
+     * walk the clauses of the instruction, checking the action in each clause.
      */
-    var dsl = new WarpDSL();
-    var instructionParametersArray = dsl.getInstructionParameters(instr);
-
-    for (InstructionParameters entry : instructionParametersArray) {
+    for (var entry = instr; entry != null; entry = entry.getElse()) {
       String flowName = entry.getFlow();
-      if (flowName.equals(flow)) {
+      if (flow.equals(flowName)) {
         /*
          * This instruction is for the flow we want. (flow name is set for push/pull instructions,
          * which are all we want. If not push/pull, then we skip this instruction.) If flow, src,
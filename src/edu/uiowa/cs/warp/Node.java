@@ -5,16 +5,20 @@ package edu.uiowa.cs.warp;
  *
  */
 
+import java.io.PrintStream;
 import java.util.*;
 
 public class Node extends SchedulableObject implements Comparable<Node> {
 	
 	private static final Integer DEFAULT_CHANNEL = 0; 
+	public static final int UNKNOWN_ID = -1; // id of a node not yet interned by its WorkLoad
 	
 	private Integer channel; // used to track the current channel node is using for Tx/Rx
 	private Integer index; // used as an alternate name for the simulator input file
+	private int id; // dense id assigned by the WorkLoad, which is the node's schedule column
     private ArrayList<Edge> edges; // edges connected to the node
     private Set<String> conflicts; // nodes with conflicts
+    private BitSet conflictIds; // ids of the nodes with conflicts
     
     // constructor that sets name, and index
     Node(String name, Integer priority, Integer index) {
@@ -23,8 +27,22 @@ public class Node extends SchedulableObject implements Comparable<Node> {
     	setPriority(priority);
     	this.index = index;
     	this.channel = DEFAULT_CHANNEL;
+    	this.id = UNKNOWN_ID;
     	this.edges = new ArrayList<Edge>();
     	this.conflicts = new HashSet<String>();
+    	this.conflictIds = new BitSet();
+    }
+    
+    /**
+     * Constructor that copies the name, priority, index, channel and
+     * id of node, but none of its edges or conflicts.
+     * 
+     * @param node the node to copy
+     */
+    Node(Node node) {
+    	this(node.getName(), node.getPriority(), node.getIndex());
+    	this.channel = node.getChannel();
+    	this.id = node.getId();
     }
     
     @Override
@@ -60,6 +78,36 @@ public class Node extends SchedulableObject implements Comparable<Node> {
     	conflicts.add(name);
     }
 	
+	/**
+	 * Adds node to the conflicts by both name and id.
+	 * 
+	 * @param node the conflicting node
+	 */
+	public void addConflict(Node node) {
+		conflicts.add(node.getName());
+		if (node.getId() != UNKNOWN_ID) {
+			conflictIds.set(node.getId());
+		}
+	}
+	
+	/**
+	 * Adds the nodes with the given names and ids to the conflicts.
+	 *
+	 * @param names the names of the conflicting nodes
+	 * @param ids the ids of the conflicting nodes
+	 */
+	public void addConflicts(Set<String> names, BitSet ids) {
+		conflicts.addAll(names);
+		conflictIds.or(ids);
+	}
+
+	/**
+	 * @return the ids of the nodes in conflicts
+	 */
+	public BitSet getConflictIds() {
+		return conflictIds;
+	}
+	
     /**
 	 * @return the size of edges
 	 */
@@ -81,6 +129,20 @@ public class Node extends SchedulableObject implements Comparable<Node> {
 		return index;
 	}
 
+	/**
+	 * @return the id, or UNKNOWN_ID if the node has not been interned
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @param id the id to set
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
 	/**
 	 * @param channel the channel to set
 	 */
@@ -96,17 +158,11 @@ public class Node extends SchedulableObject implements Comparable<Node> {
 	}
 
 	@Override
-	public void print(String headerMsg) {
-		System.out.printf("\n%s",headerMsg);
-		this.print();
-	}
-	
-	@Override
-	public void print() {
-		super.print();
-		System.out.print("Edge info for this partiion\n");
+	public void print(PrintStream out) {
+		super.print(out);
+		out.print("Edge info for this partiion\n");
 		for (Edge edge: edges) {
-			edge.print();
+			edge.print(out);
 		}
 	}
 
@@ -1,10 +1,12 @@
 package edu.uiowa.cs.warp;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.stream.Collectors;
 
 /**
  * Poset is a partially ordered set of activations
@@ -18,13 +20,27 @@ import java.util.PriorityQueue;
  */
 public abstract class Poset {	
 
+	/* workloads with fewer flows are built sequentially, because
+	 * the parallel build costs more than it saves on them
+	 */
+	private static final int MIN_PARALLEL_FLOWS = 64;
+	private static Boolean parallelConstruction = true;
+
 	private Activations activations;
 	private WorkLoad workload;
+	/* the analysis of the workload shared by all posets built for it */
+	private SynthesisContext context;
 	protected Collection<Flow> flows;
 	private Collection<Node> nodes;
 	private NodeMap nodeMap;
+	/* The poset's own copies of the nodes and edges of each flow.
+	 * Along with nodeMap, which holds copies of the workload nodes,
+	 * these hold all of the edges and conflicts the poset creates,
+	 * so building a poset only reads the workload.
+	 */
+	private HashMap<String, ArrayList<Node>> flowNodes;
+	private HashMap<String, ArrayList<Edge>> flowEdges;
 	private PriorityQueue<Activation> priorityQueue;
-	protected HashMap<String, Integer> nodeConnectivityMap;
 
 	FlowNodeToActivationMap activationMap;
 	/*
@@ -45,46 +61,25 @@ public abstract class Poset {
 	 */
 	Poset(WorkLoad workload) {
 		this.workload = workload;
+		this.context = workload.getSynthesisContext();
 		this.activations = new Activations();
 		this.activationMap = new FlowNodeToActivationMap();
 		/* init map to return a null activation if null key intered */
 		this.activationMap.put(null, null);
 		flows = workload.getFlows().values();
-		nodeMap = workload.getNodes();
+		nodeMap = new NodeMap();
+		for (Node node: workload.getNodes().values()) {
+			nodeMap.put(node.getName(), new Node(node));
+		}
 		nodes = nodeMap.values();
+		flowNodes = new HashMap<String, ArrayList<Node>>();
+		flowEdges = new HashMap<String, ArrayList<Edge>>();
 		priorityQueue = new 
 				SchedulableObjectQueue<Activation>(new 
 						PriorityComparator<Activation>());
-		/* get global node connectivity */
-		nodeConnectivityMap = getNodeConnectivity();
 		buildPosetOfActivations();
 	}
 
-	private HashMap<String, Integer> getNodeConnectivity() {
-		HashMap<String, Integer> map = new HashMap<>();
-		
-		for (Flow flow: flows) {
-			var nodesInFlow = flow.getNodes();
-			var size = nodesInFlow.size();
-			for (Integer i =0 ; i < size; i++) {
-				var nodeName = nodesInFlow.get(i).getName();
-				var connectivity = map.get(nodeName);
-				var connections = 2; // default # of connections
-				if (i == 0 || i == size-1) {
-					/* src or snk => connections = 1 */
-					connections = 1;
-				}
-				if (connectivity != null) {
-					connectivity += connections;
-					map.put(nodeName,connectivity);
-				} else {
-					map.put(nodeName,connections); // initial connection
-				}
-			}
-		}
-		return map;
-	}
-
 	public ArrayList<String> getNodeNames() {
 		var keys = nodeMap.keySet();
 		var nodeNames = new ArrayList<String>(keys.size());
@@ -93,12 +88,34 @@ public abstract class Poset {
 	}
 	
 	public String[] getNodesNamesOrderedAlphabetically() {
-		var nodeNames = workload.getNodeNamesOrderedAlphabetically();
+		var nodeNames = context.getNodeNamesOrderedAlphabetically();
 		return nodeNames;
 	}
 
+	/**
+	 * @return the (read-only) mapping from node names to their 
+	 * columns in a program schedule
+	 */
+	public Map<String, Integer> getNodeIndices() {
+		return context.getNodeIndices();
+	}
+
+	/**
+	 * Sets whether posets of large workloads are built in parallel.
+	 * Either way, the poset built is the same.
+	 * 
+	 * @param parallel
+	 */
+	public static void setParallelConstruction(Boolean parallel) {
+		parallelConstruction = parallel;
+	}
+
 	public void buildPosetOfActivations() {
 		/* assumes flow priorities have already been set */
+		if (parallelConstruction && flows.size() >= MIN_PARALLEL_FLOWS) {
+			buildPosetOfActivationsInParallel();
+			return;
+		}
 
 		/*
 		 * (1) Create edges, setting priority and release time
@@ -122,61 +139,180 @@ public abstract class Poset {
 
 	private void createEdgeLists() {
 		/* assumes flow priorities have already been set */
-		var maxFlowLength = workload.maxFlowLength();
+		var maxFlowLength = context.getMaxFlowLength();
 		for (Flow flow: flows) {
-			var flowNodes = flow.getNodes();
-			var numTxArray = workload.getNumTxAttemptsPerLink(flow.getName());
-			var flowPhase = flow.getPhase();
-			var flowPriority = flow.getPriority();
-			var period = flow.getPeriod();
-			var deadline = flow.getDeadline();
-			Edge edge = null;
-			for (Integer i = 0; i < flowNodes.size() -1 ; i++) {
-				/* Create edges, setting priority and release time */
-				/* This version adds edges to the main node in NodeMap.
-				 * This allows creation of large partitions, with at most one per node.
-				 * An alternative, we can have a lot of small partitions that can be
-				 * combined later, which may create more parallelism.
-				 * So, both the global NodeMap nodes and the nodes in the
-				 * flows are updated with the same edge information. 
-				 * This let's us play with partition creation options later.
-				 */
-				var srcNode = nodeMap.get(flowNodes.get(i).getName()); 
-				var snkNode = nodeMap.get(flowNodes.get(i+1).getName());
-				var flowSrc = flowNodes.get(i);  // node in the flow
-				var flowSnk = flowNodes.get(i+1);
-				var src = srcNode.getName();
-				var snk = snkNode.getName();
-
-				/*
-				 * Edge priority within a flow is based on position
-				 * in flow. Each Flow has its own priority. This 
-				 * creates a 2-dimensional priority. Thus, we
-				 * can keep a total ordering of edges if we fold the
-				 * table into a single row where we assume each new flow
-				 * starts maxFlowSize away from the previous flow nodes:
-				 * edgePriority = flowPriority*maxFlowLength + edgePosition
-				 */
-				// var flowPriority = flow.getPriority();
-				var priority = (flowPriority * maxFlowLength) + i;
-				//var period = flow.getPeriod();
-				// var deadline = flow.getDeadline();
-				/* edge phase = flow phase + edge position in flow */
-				var phase = flowPhase + i; 
-				var numTx = numTxArray[i];
-				edge = new Edge(flow.getName(),src,snk,priority, 
-						period, deadline, phase, numTx);
-				/* Add edge to the nodes in the NodeMap */
-				srcNode.addEdge(edge);
-				snkNode.addEdge(edge);
-				/* Add edge to the nodes in the flow */
-				flowSrc.addEdge(edge);
-				flowSnk.addEdge(edge);
-				/* Add the edege to the flow */
-				flow.addEdge(edge);
+			createEdges(flow, maxFlowLength);
+		}
+	}
 
+	/**
+	 * Builds the same poset as the sequential steps of 
+	 * buildPosetOfActivations(), but the edges, local conflicts, 
+	 * and activations of each flow, and the global conflicts of 
+	 * each node, are created concurrently. Each flow is partitioned
+	 * on its own copies of its nodes, so the only shared structures
+	 * are the node edge lists and the activation maps, which are then
+	 * merged in flow order, just as the sequential steps fill them.
+	 * Thus, findCoordinator() must only read shared state.
+	 */
+	private void buildPosetOfActivationsInParallel() {
+		var maxFlowLength = context.getMaxFlowLength();
+		var partitions = new ArrayList<Flow>(flows).parallelStream()
+				.map(flow -> new FlowPartition(flow, maxFlowLength))
+				.collect(Collectors.toList());
+		nodes.parallelStream().forEach(node -> createGlobalConflictList(node));
+		for (FlowPartition partition: partitions) {
+			var flow = partition.flow;
+			flowNodes.put(flow.getName(), partition.nodes);
+			for (Edge edge: partition.edges) {
+				nodeMap.get(edge.getSrc()).addEdge(edge);
+				nodeMap.get(edge.getSnk()).addEdge(edge);
+				addFlowEdge(flow, edge);
+			}
+			for (Activation activation: partition.activations) {
+				activations.put(activation.getName(), activation);
 			}
+			activationMap.putAll(partition.activationMap);
+		}
+	}
+
+	/*
+	 * The nodes, edges and activations of one flow, created 
+	 * without changing the poset.
+	 */
+	private final class FlowPartition {
+		private final Flow flow;
+		private final ArrayList<Node> nodes;
+		private final ArrayList<Edge> edges;
+		private final ArrayList<Activation> activations;
+		private final FlowNodeToActivationMap activationMap;
+
+		private FlowPartition(Flow flow, Integer maxFlowLength) {
+			this.flow = flow;
+			this.nodes = copyFlowNodes(flow);
+			this.edges = newFlowEdges(flow, nodes, maxFlowLength);
+			createLocalConflictList(nodes);
+			this.activationMap = new FlowNodeToActivationMap();
+			this.activations = createActivations(flow, nodes, 
+					new Activations(), activationMap);
+			activations.stream().distinct()
+					.forEach(activation -> activation.updatePriorityAndRelease(0));
+		}
+	}
+
+	private void createEdges(Flow flow, Integer maxFlowLength) {
+		for (Edge edge: newFlowEdges(flow, getFlowNodes(flow), maxFlowLength)) {
+			/* Add edge to the nodes in the NodeMap */
+			nodeMap.get(edge.getSrc()).addEdge(edge);
+			nodeMap.get(edge.getSnk()).addEdge(edge);
+			/* Add the edege to the flow */
+			addFlowEdge(flow, edge);
+		}
+	}
+
+	/*
+	 * Creates the edges of flow and adds them to the nodes in the
+	 * flow, but not to the NodeMap nodes or the flow edges.
+	 */
+	private ArrayList<Edge> newFlowEdges(Flow flow, ArrayList<Node> flowNodes, 
+			Integer maxFlowLength) {
+		var edges = new ArrayList<Edge>();
+		var numTxArray = context.getNumTxAttemptsPerLink(flow.getName());
+		var flowPhase = flow.getPhase();
+		var flowPriority = flow.getPriority();
+		var period = flow.getPeriod();
+		var deadline = flow.getDeadline();
+		Edge edge = null;
+		for (Integer i = 0; i < flowNodes.size() -1 ; i++) {
+			/* Create edges, setting priority and release time */
+			/* This version adds edges to the main node in NodeMap.
+			 * This allows creation of large partitions, with at most one per node.
+			 * An alternative, we can have a lot of small partitions that can be
+			 * combined later, which may create more parallelism.
+			 * So, both the global NodeMap nodes and the nodes in the
+			 * flows are updated with the same edge information. 
+			 * This let's us play with partition creation options later.
+			 */
+			var srcNode = nodeMap.get(flowNodes.get(i).getName()); 
+			var snkNode = nodeMap.get(flowNodes.get(i+1).getName());
+			var flowSrc = flowNodes.get(i);  // node in the flow
+			var flowSnk = flowNodes.get(i+1);
+			var src = srcNode.getName();
+			var snk = snkNode.getName();
+
+			/*
+			 * Edge priority within a flow is based on position
+			 * in flow. Each Flow has its own priority. This 
+			 * creates a 2-dimensional priority. Thus, we
+			 * can keep a total ordering of edges if we fold the
+			 * table into a single row where we assume each new flow
+			 * starts maxFlowSize away from the previous flow nodes:
+			 * edgePriority = flowPriority*maxFlowLength + edgePosition
+			 */
+			// var flowPriority = flow.getPriority();
+			var priority = (flowPriority * maxFlowLength) + i;
+			//var period = flow.getPeriod();
+			// var deadline = flow.getDeadline();
+			/* edge phase = flow phase + edge position in flow */
+			var phase = flowPhase + i; 
+			var numTx = numTxArray[i];
+			edge = new Edge(flow.getName(),src,snk,priority, 
+					period, deadline, phase, numTx);
+			edge.setIds(flow.getIndex(), srcNode.getId(), snkNode.getId());
+			/* Add edge to the nodes in the flow */
+			flowSrc.addEdge(edge);
+			flowSnk.addEdge(edge);
+			edges.add(edge);
+		}
+		return edges;
+	}
+
+	/**
+	 * Returns the poset's copies of the nodes in flow, in flow order,
+	 * creating them the first time they are needed.
+	 * 
+	 * @param flow
+	 * @return the nodes in flow
+	 */
+	protected ArrayList<Node> getFlowNodes(Flow flow) {
+		var nodesInFlow = flowNodes.get(flow.getName());
+		if (nodesInFlow == null) {
+			nodesInFlow = copyFlowNodes(flow);
+			flowNodes.put(flow.getName(), nodesInFlow);
+		}
+		return nodesInFlow;
+	}
+
+	private ArrayList<Node> copyFlowNodes(Flow flow) {
+		var nodesInFlow = new ArrayList<Node>();
+		Node predecessor = null;
+		for (Node node: flow.getNodes()) {
+			var flowNode = new Node(node);
+			flowNode.setPredecessor(predecessor);
+			nodesInFlow.add(flowNode);
+			predecessor = flowNode;
 		}
+		return nodesInFlow;
+	}
+
+	/**
+	 * @param flow
+	 * @return the edges of flow, in flow order
+	 */
+	protected ArrayList<Edge> getFlowEdges(Flow flow) {
+		return flowEdges.getOrDefault(flow.getName(), new ArrayList<Edge>());
+	}
+
+	private void addFlowEdge(Flow flow, Edge edge) {
+		var edges = flowEdges.computeIfAbsent(flow.getName(), 
+				name -> new ArrayList<Edge>());
+		/* set predecessor and add edge to flow */
+		Edge predecessor = null;
+		if (!edges.isEmpty()) {
+			predecessor = edges.get(edges.size()-1);
+		}
+		edge.setPredecessor(predecessor);
+		edges.add(edge);
 	}
 
 	private void createConflictLists() {
@@ -188,43 +324,41 @@ public abstract class Poset {
 	}
 
 	private void createGlobalConflictLists() {
+		/* a node conflicts with every node it shares an
+		 * edge with in some flow, which the context has
+		 */
 		for (Node node: nodes) {
-			for (Edge edge: node.getEdges()) {
-				/* get src and snk nodes and names */
-				var src = edge.getSrc();
-				var snk = edge.getSnk();
-				var srcNode = nodeMap.get(src);
-				var snkNode = nodeMap.get(snk);
-				/* 
-				 * conflict list is a set, so just add
-				 * don't need to worry about duplicates
-				 * as Set ensures that doesn't happen.
-				 */
-				srcNode.addConflict(snk);
-				snkNode.addConflict(src);
-			}
+			createGlobalConflictList(node);
 		}
 	}
 
+	private void createGlobalConflictList(Node node) {
+		var id = node.getId();
+		node.addConflicts(context.getConflicts(id), context.getConflictIds(id));
+	}
+
 	private void createLocalConflictLists() {
 		for (Flow flow: flows) {
-			var flowNodes = flow.getNodes();
-			for (Integer i = 0; i < flowNodes.size() -1 ; i++) {
-				var srcNode = flowNodes.get(i); 
-				var snkNode = flowNodes.get(i+1);
-				var src = srcNode.getName();
-				var snk = snkNode.getName();
-				/* 
-				 * conflict list is a set, so just add
-				 * don't need to worry about duplicates
-				 * as Set ensures that doesn't happen.
-				 */
-				srcNode.addConflict(snk);
-				snkNode.addConflict(src);
-			}
+			createLocalConflictList(flow);
 		}
+	}
 
+	private void createLocalConflictList(Flow flow) {
+		createLocalConflictList(getFlowNodes(flow));
+	}
 
+	private void createLocalConflictList(ArrayList<Node> flowNodes) {
+		for (Integer i = 0; i < flowNodes.size() -1 ; i++) {
+			var srcNode = flowNodes.get(i); 
+			var snkNode = flowNodes.get(i+1);
+			/* 
+			 * conflict list is a set, so just add
+			 * don't need to worry about duplicates
+			 * as Set ensures that doesn't happen.
+			 */
+			srcNode.addConflict(snkNode);
+			snkNode.addConflict(srcNode);
+		}
 	}
 
 	/**
@@ -260,45 +394,66 @@ public abstract class Poset {
 	
 	private void createInitialActivations() {
 		for (Flow flow: flows) {
-			var nodesInFlow = flow.getNodes();
-			Integer coordinatorIndex = 0;
-			/* Find the node with max edges connected.
-			 * This will be the first coordinator selected
-			 * for this flow.
-			 */
-			coordinatorIndex = findCoordinator(nodesInFlow);
-			var txArray = buildTxArray(nodesInFlow);
-			/* if coordinatorIndex is odd, then other coordinators
-			 * are also odd numbers, even otherwise. 
-			 * */
-			Integer startIndex = 0; // for even coordinatorIndex
-			if ((coordinatorIndex % 2) == 1) {
-				/* coordinatorIndex is odd, so start at 1 */
-				startIndex = 1;
-			}
-			if (startIndex >= nodesInFlow.size()) {
-				/* create a partition the single partition */
-			}
-			var activationPhaseOffset = 0;
-			for (Integer i = startIndex; i < nodesInFlow.size(); i+=2) {
-				var node = nodesInFlow.get(i);
-				/* create a partition consisting of node i */
-				String name = flow.getName() + ":" + node.getName();
-				Activation partition = getActivation(name, node);
-				/* Update phase for each edge in new partition based on 
-				 * the current offset, which increases after each
-				 * partition created.
-				 * */
-				partition.increaseEdgePhases(activationPhaseOffset);
-				activations.put(name,partition);
-				/* increase offset for next partition based on the 
-				 * max numTx in this partition/node 
-				 * But need to account for phase already assumes
-				 * 1 Tx already
-				 * */
-				activationPhaseOffset += txArray[i]-1;  // adjust by one
-			} 
+			createActivations(flow);
+		}
+	}
+
+	/*
+	 * Partitions flow into activations, each coordinated by every
+	 * other node of the flow, and adds them to the activations.
+	 * Returns the activations created.
+	 */
+	private ArrayList<Activation> createActivations(Flow flow) {
+		return createActivations(flow, getFlowNodes(flow), activations, activationMap);
+	}
+
+	/*
+	 * Partitions flow, whose nodes are nodesInFlow, adding the
+	 * activations created to activationsByName and nodeActivations.
+	 */
+	private ArrayList<Activation> createActivations(Flow flow, ArrayList<Node> nodesInFlow,
+			Activations activationsByName, FlowNodeToActivationMap nodeActivations) {
+		var flowActivations = new ArrayList<Activation>();
+		Integer coordinatorIndex = 0;
+		/* Find the node with max edges connected.
+		 * This will be the first coordinator selected
+		 * for this flow.
+		 */
+		coordinatorIndex = findCoordinator(nodesInFlow);
+		var txArray = buildTxArray(nodesInFlow);
+		/* if coordinatorIndex is odd, then other coordinators
+		 * are also odd numbers, even otherwise. 
+		 * */
+		Integer startIndex = 0; // for even coordinatorIndex
+		if ((coordinatorIndex % 2) == 1) {
+			/* coordinatorIndex is odd, so start at 1 */
+			startIndex = 1;
 		}
+		if (startIndex >= nodesInFlow.size()) {
+			/* create a partition the single partition */
+		}
+		var activationPhaseOffset = 0;
+		for (Integer i = startIndex; i < nodesInFlow.size(); i+=2) {
+			var node = nodesInFlow.get(i);
+			/* create a partition consisting of node i */
+			String name = flow.getName() + ":" + node.getName();
+			Activation partition = getActivation(name, node, 
+					activationsByName, nodeActivations);
+			/* Update phase for each edge in new partition based on 
+			 * the current offset, which increases after each
+			 * partition created.
+			 * */
+			partition.increaseEdgePhases(activationPhaseOffset);
+			activationsByName.put(name,partition);
+			/* increase offset for next partition based on the 
+			 * max numTx in this partition/node 
+			 * But need to account for phase already assumes
+			 * 1 Tx already
+			 * */
+			activationPhaseOffset += txArray[i]-1;  // adjust by one
+			flowActivations.add(partition);
+		} 
+		return flowActivations;
 	}
 	
 	private Integer getMaxTx(Node node) {
@@ -309,37 +464,62 @@ public abstract class Poset {
 		return result;
 	}
 
-	private Activation getActivation(String name, Node node) {
-		Activation newPartition = activations.get(name);
+	private Activation getActivation(String name, Node node, 
+			Activations activationsByName, FlowNodeToActivationMap nodeActivations) {
+		Activation newPartition = activationsByName.get(name);
 		if (newPartition == null) {
 			// no partition by that name exists, so create one
 			newPartition = new Activation(name);
-			activationMap.put(node,newPartition);
+			nodeActivations.put(node,newPartition);
 		}
 		/* add the node as the coordinator */
-		newPartition.addCoordinator(node.getName());
+		newPartition.addCoordinator(node);
 		/* set the conflicts */
 		newPartition.setConflicts(node.getConflicts());
+		newPartition.setConflictIds(node.getConflictIds());
 		/* add the edges associated with this coordinator */
 		newPartition.addEdges(node.getEdges());
 		/* set the predecessor as the node's predecessor */
 		var nodePred = node.getPredecessor();
-		var pred = activationMap.get(nodePred);
+		var pred = nodeActivations.get(nodePred);
 		if (nodePred != null && pred == null) {
 			/* try next node up the flow */
 			nodePred = nodePred.getPredecessor();
-			pred = activationMap.get(nodePred);
+			pred = nodeActivations.get(nodePred);
 		}
 		newPartition.setPredecessor(pred);
 		return newPartition;
 	}
 
+	/**
+	 * @return the number of nodes, which is one more than the largest node id
+	 */
+	public Integer getNumNodes() {
+		return workload.getNumNodes();
+	}
+
+	/**
+	 * @return the stream the messages about this poset and its
+	 * schedules are printed to, which is the workload's
+	 */
+	public PrintStream getOut() {
+		return workload.getOut();
+	}
+
+	/**
+	 * @return the stream the errors found in this poset and its
+	 * schedules are printed to, which is the workload's
+	 */
+	public PrintStream getErr() {
+		return workload.getErr();
+	}
+
 	public Integer getHyperPeriod() {
-		return workload.getHyperPeriod();
+		return context.getHyperPeriod();
 	}
 
 	public Integer getMaxPhase() {
-		return workload.getMaxPhase();
+		return context.getMaxPhase();
 	}
 
 	public void orderActivations() {
@@ -354,6 +534,64 @@ public abstract class Poset {
 						PriorityComparator<Activation>(),activations.values());
 	}
 
+	/**
+	 * addFlow adds the activations of a flow that was added to the
+	 * workload after the poset was built. Only the new flow's edges,
+	 * conflicts, and activations are created, so the activations
+	 * already in the poset are not changed. The new activations are
+	 * released at time 0 and added to the priority queue.
+	 *
+	 * @param flowName
+	 * @return the activations of the new flow
+	 */
+	public ArrayList<Activation> addFlow(String flowName) {
+		var flow = workload.getFlows().get(flowName);
+		context = workload.getSynthesisContext();
+		createEdges(flow, context.getMaxFlowLength());
+		for (Edge edge: getFlowEdges(flow)) {
+			/* global conflicts of the new edges */
+			var srcNode = nodeMap.get(edge.getSrc());
+			var snkNode = nodeMap.get(edge.getSnk());
+			srcNode.addConflict(snkNode);
+			snkNode.addConflict(srcNode);
+		}
+		createLocalConflictList(flow);
+		var flowActivations = createActivations(flow);
+		for (Activation activation: flowActivations) {
+			activation.updatePriorityAndRelease(0);
+			priorityQueue.add(activation);
+		}
+		return flowActivations;
+	}
+
+	/**
+	 * removeFlow removes the edges and activations of a flow that
+	 * was removed from the workload. The conflict sets of the nodes
+	 * are left as they are, so they may still include nodes that
+	 * were only adjacent on the removed flow. That only makes
+	 * activations added later more conservative.
+	 *
+	 * @param flowName
+	 */
+	public void removeFlow(String flowName) {
+		for (Node node: nodes) {
+			node.getEdges().removeIf(edge -> edge.getFlow().equals(flowName));
+		}
+		var prefix = flowName + ":";
+		activations.keySet().removeIf(name -> name.startsWith(prefix));
+		activationMap.values().removeIf(activation ->
+				activation != null && activation.getName().startsWith(prefix));
+		flowNodes.remove(flowName);
+		flowEdges.remove(flowName);
+		for (Flow flow: flows) {
+			/* flow indexes after the removed flow moved up */
+			for (Edge edge: getFlowEdges(flow)) {
+				edge.setIds(flow.getIndex(), edge.getSrcId(), edge.getSnkId());
+			}
+		}
+		context = workload.getSynthesisContext();
+	}
+
 	/**
 	 * getNextActivation returns the highest priority
 	 * partition that has been released at or before input
@@ -376,62 +614,27 @@ public abstract class Poset {
 		priorityQueue.add(activation);
 	}
 
+	/**
+	 * @return the analysis of the workload's communication graph,
+	 * which is done once for all of the posets built for it
+	 */
+	protected TopologyAnalysis getTopology() {
+		return context.getTopology();
+	}
+
 	/**
 	 * findBaseStation is used by algorithms that generate the
 	 * partially ordered set of activations using a base station. 
-	 * This method searches the set of flows to find the node that
-	 * is always one of the src or snk nodes. In the case of a tie
-	 * where there are two candidates the initial snk node is
-	 * returned. If there are multiple base stations, only the fist
-	 * one found is returned.
+	 * The base station is the node that is always one of the src
+	 * or snk nodes of the flows. In the case of a tie where there 
+	 * are two candidates the initial snk node is returned. If there
+	 * are multiple base stations, only the fist one found is returned.
+	 * The search is done once, by the TopologyAnalysis.
 	 * 
 	 * @return baseStation for the workload
 	 */
 	protected Node findBaseStation() {
-		
-		Node baseStation = null;
-		Iterator<Flow> iterator = flows.iterator();
-		Flow flow = iterator.next();
-		var nodes = flow.getNodes();
-		var srcBaseStation = nodes.get(0);
-		var srcBaseStationName = srcBaseStation.getName();
-		var snkBaseStation = nodes.get(nodes.size()-1);
-		var snkBaseStationName = snkBaseStation.getName(); 
-		var found = false;
-    
-        while (!found && iterator.hasNext()) {
-        	flow = iterator.next();
-    		nodes = flow.getNodes();
-        	var src = nodes.get(0);
-			var srcName = src.getName();
-			var snk = nodes.get(nodes.size()-1);
-			var snkName = snk.getName();
-			if (!srcBaseStationName.equals(srcName) && 
-					snkBaseStationName.equals(snkName)) {
-				baseStation = snkBaseStation;
-				found = true;
-			} else if (srcBaseStationName.equals(srcName) && 
-					!snkBaseStationName.equals(snkName)) {
-				baseStation = srcBaseStation;
-				found = true;
-			} else if (!srcBaseStationName.equals(snkName) &&
-					snkBaseStationName.equals(srcName)) {
-				baseStation = snkBaseStation;
-				found = true;
-			} else if (srcBaseStationName.equals(snkName) && 
-					!snkBaseStationName.equals(srcName)) {
-				baseStation = srcBaseStation;
-				found = true;
-			}
-        }
-        if (!found) {
-        	/* initial snk and src tie for base station. That is
-        	 * each is always a flow src with the other a snk or
-        	 * vice versa. 
-        	 * So pick initial snk as the base station */
-        	baseStation = snkBaseStation;
-        }
-		return baseStation;
+		return nodeMap.get(getTopology().getBaseStation());
 	}
 
 }
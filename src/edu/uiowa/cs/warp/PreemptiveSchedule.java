@@ -29,6 +29,11 @@ public class PreemptiveSchedule extends Schedule {
 		return program;
 	}
 	
+	@Override
+	public ProgramSchedule updateProgram(ProgramSchedule program) {
+		return toProgram();
+	}
+	
 	private ScheduleLocation findPreeptiveChannelAndTime(Integer startTime, Activation schedulableObject ) {
 		
 		var channel = numChannels;
@@ -39,8 +44,9 @@ public class PreemptiveSchedule extends Schedule {
 		
 		
 		if (channelConsidered == numChannels) {
-			/* no available time slots near this time, even for preemption */
-			return findChannelAndTime(time+1,schedulableObject);
+			/* no available time slots near this time, even for preemption,
+			 * so continue the search at the next time */
+			return retryAt(time+1);
 		} else {
 			/* can use timeAvailable.time here on timeAvailable.channel
 			 * then must find additional time on same channel until 
@@ -60,6 +66,8 @@ public class PreemptiveSchedule extends Schedule {
 				channel = channelConsidered;
 				schedulableObject.addScheduleTimes(additionalScheduleTimes);
 			} else {
+				/* no time left in the schedule to finish, so the 
+				 * search ends with channel numChannels */
 				time = lastStartTime;
 			}
 		}
@@ -72,34 +80,49 @@ public class PreemptiveSchedule extends Schedule {
 		var results = new ArrayList<ScheduleTime>();
 		
 		// if (timeRemaining <= )
-		while (time < endScheduleTime && conflictsExist(a1, time, timeRemaining )) {
-			time ++; 
-		}
-		if (time >= endScheduleTime) {
-			/* no conflict time available */
-			results.add(new ScheduleTime(time,time));
-			return results;
-		} 
-		
-		if (isAvailable(a1, channel, time, timeRemaining)) {
-			results.add(new ScheduleTime(time,time+timeRemaining-1));
-		} else {
-			var timeAvailable = availableTime(a1,  channel, time);
-			if (timeAvailable > 0) {
-				/* found at least one time slot available */
-//				a1.addAdditionalStartTime(time);
-				results.addAll(findAdditionalTime(channel,time+timeAvailable,a1,timeRemaining-timeAvailable));
+		while (results.isEmpty()) {
+			time = nextConflictFreeTime(a1, time, timeRemaining);
+			if (time >= endScheduleTime) {
+				/* no conflict time available */
+				results.add(new ScheduleTime(time,time));
+			} else if (isAvailable(a1, channel, time, timeRemaining)) {
+				results.add(new ScheduleTime(time,time+timeRemaining-1));
 			} else {
-				/* look ahead in time by one unit */
-				results.addAll(findAdditionalTime(channel,time+1,a1,timeRemaining));
+				var timeAvailable = availableTime(a1,  channel, time);
+				if (timeAvailable > 0) {
+					/* found at least one time slot available */
+//					a1.addAdditionalStartTime(time);
+					time += timeAvailable;
+					timeRemaining -= timeAvailable;
+				} else {
+					/* look ahead past the entries on this channel
+					 * that can't be combined with a1 */
+					time = nextUnblockedTime(a1, channel, time);
+				}
 			}
-			
 		}
 		
 		return results;
 	}
 	
 	
+	/*
+	 * Returns the first time after time at which the slot on channel
+	 * is empty or holds an entry that a1 can be combined with. Until
+	 * then, a1 is not available on channel for any duration.
+	 */
+	private Integer nextUnblockedTime(Activation a1, Integer channel, Integer time) {
+		time++;
+		while (time < endScheduleTime) {
+			var entry = schedule.get(channel,time);
+			if (entry == null || entry.canCombine(a1)) {
+				break;
+			}
+			time++;
+		}
+		return time;
+	}
+	
 	private ScheduleLocation findMaxTimeAvailable(Integer time, Activation schedulableObject) {
 		var maxTime = 0;
 		var bestChannel = numChannels;
@@ -113,7 +136,7 @@ public class PreemptiveSchedule extends Schedule {
 		}
 // TEMP
 		if (maxTime > 0) {
-			System.err.printf("\n\t\tMaxTime is %d and bestChannel is %d\n", maxTime, bestChannel);
+			poset.getErr().printf("\n\t\tMaxTime is %d and bestChannel is %d\n", maxTime, bestChannel);
 		}
 // TEMP
 		return new ScheduleLocation(bestChannel,maxTime);
@@ -208,7 +231,7 @@ public class PreemptiveSchedule extends Schedule {
 			/* Add this object to the schedule for the
 			 * from startTime to endTime.
 			 */
-			schedule.set(channel, i, entry);
+			setEntry(channel, i, entry);
 		}
 		
 		return success;
@@ -243,7 +266,7 @@ public class PreemptiveSchedule extends Schedule {
 				 *  to see if we can combine activations
 				 */
 				var combinedDuration = currentEntry.getCombinedExecutionDuration(next);
-				var combinedEntry = new CombinedActivation(currentEntry,next);
+				var combinedEntry = combinationProbe(currentEntry,next);
 				var searchTime = currentEntry.getEndTime()+1;
 				var searchLength = combinedDuration - duration;
 				if (isAvailable(combinedEntry, channel, searchTime, searchLength)) {
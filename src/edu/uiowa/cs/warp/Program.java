@@ -1,8 +1,8 @@
 package edu.uiowa.cs.warp;
 
-import edu.uiowa.cs.utilities.Utilities;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 
 
@@ -14,9 +14,8 @@ import java.util.HashMap;
 public class Program implements SystemAttributes {
 
   private static final String UNKNOWN = "Unknown";
-  private static final String SLEEP_INSTRUCTION = "sleep";
-  private static final String WAIT_FRAGMENT = "wait(";
-  private static final String ELSE_PULL_FRAGMENT = "else pull(";
+  private static final int UNKNOWN_CHANNEL = Channels.UNKNOWN;
+  private static final Instruction SLEEP_INSTRUCTION = Instruction.sleep();
 
   // Global flags and data structures
   // FileManager wfm; // class to provide basic WARP file management functions
@@ -33,6 +32,8 @@ public class Program implements SystemAttributes {
   Boolean verbose;
   Boolean reportLatency;
   private Description deadlineMisses;
+  private BitSet[] busySlots; // for each node, the time slots in which it is not sleeping
+  private Schedule posetSchedule; // schedule the program was built from, null if not poset-based
 
   Program(WorkLoad workLoad, Integer nChannels, ScheduleChoices choice, Boolean verbose,
       Boolean reportLatency) {
@@ -86,6 +87,7 @@ public class Program implements SystemAttributes {
         setScheduleSelected(choice);
         var poset1 = new WarpPoset(workLoad);
         var schedule1 = new NonPreemptiveSchedule(poset1, this.nChannels);
+        posetSchedule = schedule1;
         var newProgram = schedule1.toProgram();
         setSchedule(newProgram); // store the schedule built
         break;
@@ -99,6 +101,7 @@ public class Program implements SystemAttributes {
         // var poset = new BasicPoset(workLoad);
         var poset2 = new ConnectivityPoset(workLoad);
         var schedule2 = new NonPreemptiveSchedule(poset2, this.nChannels);
+        posetSchedule = schedule2;
         newProgram = schedule2.toProgram();
         setSchedule(newProgram); // store the schedule built
         break;
@@ -154,15 +157,8 @@ public class Program implements SystemAttributes {
       if (getOptimizationFlag()) { // only specify when optimization not requested
         scheduleDetails += "\tOptimization Requested:\tFalse\n";
       }
-      System.out.println(scheduleDetails);
+      workLoad.getOut().println(scheduleDetails);
     }
-    var nTx = 0;// support nTx per transmission, which is set based on input parameter if
-                // nTransmissions == n 0 else flow.nTXperLink
-    var nTransmissions = getNumTransmissions();
-    Boolean realtimeHART = getRealTimeHartFlag();
-    var optimizationRequested = getOptimizationFlag();
-    var schedule = new ProgramSchedule(); // create an empty schedule
-    var newInstruction = SLEEP_INSTRUCTION; // initialize the new Instruction with a sleep
     var prioritizedFlows = workLoad.getFlowNamesInPriorityOrder();
     // var orderedNodes = workLoad.getNodeNamesOrderedAlphabetically(); // create an array of node
     // names
@@ -175,588 +171,678 @@ public class Program implements SystemAttributes {
      * }
      */
     var hyperPeriod = workLoad.getHyperPeriod();
-    for (int i = 0; i < hyperPeriod; i++) { // This loop makes sure the schedule is full up to the
-                                            // period and the channels entries are all initialized
-      var newInstructionTimeSlot = new InstructionTimeSlot(nNodes, SLEEP_INSTRUCTION); // create a
-                                                                                       // time slot
-                                                                                       // for
-                                                                                       // nNodes,
-                                                                                       // each
-                                                                                       // initialized
-                                                                                       // with a
-                                                                                       // SLEEP_INSTRUCTION
-      schedule.add(newInstructionTimeSlot);
-      channelsAvailable.addNewChannelSet();// initially, all channels are available in each time
-                                           // slot
+    // create an empty schedule, which is sparse if the workload is large
+    var schedule = ProgramSchedule.create(hyperPeriod, nNodes);
+    busySlots = new BitSet[nNodes]; // no node is busy in an empty schedule
+    for (int node = 0; node < nNodes; node++) {
+      busySlots[node] = new BitSet(hyperPeriod);
     }
-    // create an instance of the Warp DSL class for parsing instructions
-    var dsl = new WarpDSL();
-
+    addTimeSlots(schedule, hyperPeriod); // This makes sure the schedule is full up to the
+                                         // period and the channels entries are all initialized
     for (String flowName : prioritizedFlows) { // loop through all of the nodes in priority order
-      var nodesInFlow = workLoad.getNodesInFlow(flowName);
-      var nNodesInFlow = nodesInFlow.length;
-      var e2eFlag = false; // default is to not use e2e to achieve E2E
-      if (nTransmissions == 0) { // use nTx from flow.nTXperLink for realtimeHart and the linkTX
-                                 // array otherwise
-        e2eFlag = true; // need to meet e2e to hit E2E for flow
-        if (realtimeHART) {
-          nTx = workLoad.getFlowTxAttemptsPerLink(flowName);
-        } // else we will computer nTx from the linkTx array for the flow as we go
+      scheduleFlow(schedule, flowName, hyperPeriod, false);
+    }
+    setSchedule(schedule); // store the schedule built
+  }
 
-      } else {
-        nTx = nTransmissions;
-      }
-      var snk = "";
-      var linkTxCosts = workLoad.getNumTxAttemptsPerLink(flowName);
-      if (verbose) {
-        var totalCost = workLoad.getTotalTxAttemptsInFlow(flowName);
-        var minCost = nNodesInFlow - 1; // nEdges in the flow is the minimum communication cost,
-                                        // i.e., min nTx to go E2E with no errors
-        System.out.printf(
-            "Flow %s has a minimum communication cost of %d and a worst-case communication cost of %d\n",
-            flowName, minCost, totalCost);
+  /**
+   * Admits a new flow into the program that has already been built. Only the new flow's
+   * transmissions are scheduled, into the time slots and channels that are still free, so the
+   * flows already in the program keep their slots and channels. The flow's nodes must already be in
+   * the workload, and its period must divide the hyperperiod, so that the schedule keeps its
+   * length and node columns. For poset-based programs, the phase can't exceed the workload's
+   * getMaxPhase() either, as that sizes the poset schedule. Only the time slots where the poset
+   * schedule changed are generated again.
+   *
+   * @param flowName the name of the new flow
+   * @param priority the flow priority
+   * @param period the flow period
+   * @param deadline the flow deadline
+   * @param phase the flow phase
+   * @param nodeNames the nodes of the flow, from src to snk
+   * @return true if the program still meets every deadline
+   */
+  public Boolean addFlow(String flowName, Integer priority, Integer period, Integer deadline,
+      Integer phase, String... nodeNames) {
+    var hyperPeriod = workLoad.getHyperPeriod();
+    if (period <= 0 || hyperPeriod % period != 0) {
+      throw new IllegalArgumentException(String.format(
+          "Flow %s: period %d doesn't divide the hyperperiod %d", flowName, period, hyperPeriod));
+    }
+    if (posetSchedule != null && phase > workLoad.getMaxPhase()) {
+      throw new IllegalArgumentException(
+          String.format("Flow %s: phase %d is greater than the schedule's maximum phase %d", flowName, phase,
+              workLoad.getMaxPhase()));
+    }
+    workLoad.addFlow(flowName, priority, period, deadline, phase, nodeNames);
+    setScheduleSelected(SchedulerSelected); // put the new flow in scheduling order
+    Boolean schedulable;
+    if (posetSchedule != null) {
+      schedulable = posetSchedule.addFlow(flowName);
+      setSchedule(posetSchedule.updateProgram(scheduleBuilt));
+    } else {
+      schedulable = scheduleFlow(scheduleBuilt, flowName, hyperPeriod, true)
+          && deadlineMisses.size() == 0;
+    }
+    return schedulable;
+  }
+
+  /**
+   * Removes a flow from the program that has already been built. The flow's push and pull
+   * instructions, and the waits that listened for them, are cleared from the schedule and their
+   * channels are returned to the channels available in each time slot. The other flows keep their
+   * slots and channels.
+   *
+   * @param flowName the name of the flow to remove
+   * @return true if the program meets every deadline
+   */
+  public Boolean removeFlow(String flowName) {
+    return removeFlow(flowName, false);
+  }
+
+  /**
+   * Removes a flow from the program that has already been built, as removeFlow(flowName) does.
+   * If compact is true, the flows after it in scheduling order are then rescheduled, in that
+   * order, so their transmissions can move earlier into the freed slots. Compaction is only done
+   * for the original (non-poset) schedulers; poset-based programs are never compacted, and only
+   * the time slots where the poset schedule changed are generated again.
+   *
+   * @param flowName the name of the flow to remove
+   * @param compact true to move lower priority flows into the freed slots
+   * @return true if the program meets every deadline
+   */
+  public Boolean removeFlow(String flowName, Boolean compact) {
+    var laterFlows = new ArrayList<String>();
+    var prioritizedFlows = workLoad.getFlowNamesInPriorityOrder();
+    if (compact && posetSchedule == null) {
+      var position = prioritizedFlows.indexOf(flowName);
+      laterFlows.addAll(prioritizedFlows.subList(position + 1, prioritizedFlows.size()));
+    }
+    var hyperPeriod = workLoad.getHyperPeriod(); // the length of the schedule built
+    workLoad.removeFlow(flowName);
+    Boolean schedulable;
+    if (posetSchedule != null) {
+      schedulable = posetSchedule.removeFlow(flowName);
+      setSchedule(posetSchedule.updateProgram(scheduleBuilt));
+    } else {
+      clearFlow(scheduleBuilt, flowName);
+      for (String laterFlow : laterFlows) {
+        clearFlow(scheduleBuilt, laterFlow);
       }
-      if (nTx == 0) { // this is true when !realtimeHART and nTransmssions wasn't specified => nTx
-                      // is dependent on reliability target
-        nTx = linkTxCosts[0]; // set nTx to the nTx for the first link in the flow
+      for (String laterFlow : laterFlows) {
+        scheduleFlow(scheduleBuilt, laterFlow, hyperPeriod, true);
       }
-      var previousNodeInstruction = new Integer[nTx]; // set instruction location in schedule for
-                                                      // previous slots to 0
-      Arrays.fill(previousNodeInstruction, 0); // initialize locations to 0
-      var flowPhase = workLoad.getFlowPhase(flowName); // used to compute latency after done
-                                                       // scheduling this flow
-      var flowLastInstruction = flowPhase; // used to compute latency after done scheduling this
-                                           // flow
-      var flowDeadline = workLoad.getFlowDeadline(flowName); // used to check schedulability for
-                                                             // this flow
-      var flowPeriod = workLoad.getFlowPeriod(flowName);
-      var FlowSrcInstructionTimeSlot = flowPhase; // initialize the time at which the flow's src
-                                                  // node can first transmit
-      for (int instance = 0; instance < hyperPeriod / flowPeriod; instance++) {
-        for (int flowNodeIndex = 0; flowNodeIndex < nNodesInFlow - 1; flowNodeIndex++) { // don't
-                                                                                         // push for
-                                                                                         // last
-                                                                                         // node, so
-                                                                                         // stop at
-                                                                                         // node
-                                                                                         // n-1,
-                                                                                         // which is
-                                                                                         // 2 less
-                                                                                         // than
-                                                                                         // count
-          var currentNodeName = nodesInFlow[flowNodeIndex]; // get name of current node in the flow
-                                                            // (aka source of data)
-          if (e2eFlag) {
-            nTx = linkTxCosts[flowNodeIndex]; // set nTx for this link
-          }
-          var currentNodeInstruction = new Integer[nTx]; // store instruction location in schedule
-                                                         // for previous node
-          Arrays.fill(currentNodeInstruction, 0); // initialize the currentNondeInstruction
-          for (int index = 0; index < nTx; index++) { // repeat instruction nTx times so that this
-                                                      // flow meets desired reliability
-            var instructionNodeName = currentNodeName; // name of node for which we write an
-                                                       // instruction in its program
-            var priorSrcInstruction = UNKNOWN; // variable used to store and possibly update the
-                                               // priorSrcInstruction during optimization
-            var priorSrcUpdated = false; // flag to indicate if priorSrcInstruction is updated or
-                                         // not
-            snk = nodesInFlow[flowNodeIndex + 1]; // should get a valid sink node, set name to
-                                                  // UNKNOWN if we don't
-            // when not optimizing instructionNodeName is current node, but we might update a
-            // different node's instruction to optimize
-            var phase = instance * flowPeriod + flowPhase; // update phase for the instance of the
-                                                           // flow release, which happens once every
-                                                           // period in the hyperPeriod
-            var firstPossibleSlot = Math.max(phase, FlowSrcInstructionTimeSlot); // make sure
-                                                                                 // precedence
-                                                                                 // constraints on
-                                                                                 // flow are
-                                                                                 // preserved
-            Integer instructionIndex = findNextAvailableInstructionTimeSlot(schedule,
-                firstPossibleSlot, flowNodeIndex, index, nTx, previousNodeInstruction,
-                currentNodeInstruction, SLEEP_INSTRUCTION, realtimeHART, optimizationRequested,
-                nodeIndex.get(currentNodeName), nodeIndex.get(snk));
-            if (instructionIndex >= schedule.size()) { // instructionIndex is beyond current
-                                                       // schedule length. Increase schedule and
-                                                       // channelsAvailable tables
-              for (int i = schedule.size(); i <= instructionIndex; i++) {
-                var newInstructionTimeSlot = new InstructionTimeSlot(nNodes, SLEEP_INSTRUCTION); // create
-                                                                                                 // a
-                                                                                                 // time
-                                                                                                 // slot
-                                                                                                 // for
-                                                                                                 // nNodes,
-                                                                                                 // each
-                                                                                                 // initialized
-                                                                                                 // with
-                                                                                                 // a
-                                                                                                 // SLEEP_INSTRUCTION
-                schedule.add(newInstructionTimeSlot);
-                channelsAvailable.addNewChannelSet(); // need make sure we have channels available
-                                                      // for all slots. instructionIndex may be >
-                                                      // initialized size of array because of
-                                                      // phases...
-              }
-            }
-            String channel = findNextAvailableChannel(schedule, instructionNodeName,
-                instructionIndex, nodeIndex.get(currentNodeName), nodeIndex.get(snk));
+      schedulable = deadlineMisses.size() == 0;
+    }
+    return schedulable;
+  }
 
-            // Now check if we have a valid channel. If not we need to find a new time slot further
-            // down the schedule.
-            // So, initialize the search to start at the current slot and then increase by one each
-            // time we loop if the current slot
-            // Now check if we have a valid channel. If not we need to find a new time slot further
-            // down the schedule.
-            // So, initialize the search to start at the current slot and then increase by one each
-            // time we loop if the current slot
-            while (channel.equals(UNKNOWN)) { // findNextAvailableChannel will return UNKNOWN if no
-                                              // channel was available. In that case, we need to
-                                              // find a new slot for this instruction after the last
-                                              // index found
-              var startSearchIndex = instructionIndex + 1;
-              instructionIndex = findNextAvailableInstructionTimeSlot(schedule, startSearchIndex,
-                  flowNodeIndex, index, nTx, previousNodeInstruction, currentNodeInstruction,
-                  SLEEP_INSTRUCTION, realtimeHART, optimizationRequested,
-                  nodeIndex.get(currentNodeName), nodeIndex.get(snk));
-              if (instructionIndex >= schedule.size()) { // instructionIndex is beyond current
-                                                         // schedule lenght. Increase schedule and
-                                                         // channelsAvailable tables
-                for (int i = schedule.size(); i <= instructionIndex; i++) {
-                  var newInstructionTimeSlot = new InstructionTimeSlot(nNodes, SLEEP_INSTRUCTION); // create
-                                                                                                   // a
-                                                                                                   // time
-                                                                                                   // slot
-                                                                                                   // for
-                                                                                                   // nNodes,
-                                                                                                   // each
-                                                                                                   // initialized
-                                                                                                   // with
-                                                                                                   // a
-                                                                                                   // SLEEP_INSTRUCTION
-                  schedule.add(newInstructionTimeSlot);
-                  channelsAvailable.addNewChannelSet(); // need make sure we have channels available
-                                                        // for all slots. instructionIndex may be >
-                                                        // initialized size of array because of
-                                                        // phases...
-                }
-              }
-              channel = findNextAvailableChannel(schedule, instructionNodeName, instructionIndex,
-                  nodeIndex.get(currentNodeName), nodeIndex.get(snk));
+  /*
+   * Clears the push and pull instructions of flowName from the schedule, along with the waits of
+   * the nodes that were listening for them, and the deadline misses reported for the flow. A wait
+   * stays if another instruction in the time slot still transmits to that node on its channel.
+   * Writing the cleared time slots returns the flow's channels to them.
+   */
+  private void clearFlow(ProgramSchedule schedule, String flowName) {
+    var nodeIndex = getNodeMapIndex();
+    var nNodes = schedule.getNumColumns();
+    var freedWaits = new long[nNodes]; // for each node, channels of waits for removed clauses
+    var neededWaits = new long[nNodes]; // for each node, channels of waits for remaining clauses
+    for (int row = 0; row < schedule.size(); row++) {
+      Instruction[] timeSlot = null; // only copied when the row has an instruction of the flow
+      for (int node = 0; node < nNodes; node++) {
+        var instruction = schedule.get(row, node);
+        if (instruction.hasFlow(flowName)) {
+          if (timeSlot == null) {
+            timeSlot = schedule.get(row).toArray(new Instruction[nNodes]);
+            Arrays.fill(freedWaits, 0L);
+          }
+          for (var clause = instruction; clause != null; clause = clause.getElse()) {
+            if (flowName.equals(clause.getFlow())) {
+              freedWaits[nodeIndex.get(clause.getListener())] |=
+                  channelsAvailable.channelMask(clause.getChannel());
             }
-            workLoad.setNodeChannel(instructionNodeName, Integer.valueOf(channel));
-            if (realtimeHART) {
-              newInstruction = pushInstruction(flowName, currentNodeName, snk, channel);
-            } else {
-              newInstruction = hasPushInstruction(flowName, currentNodeName, snk, channel);
+          }
+          timeSlot[node] = instruction.withoutFlow(flowName);
+        }
+      }
+      if (timeSlot != null) {
+        Arrays.fill(neededWaits, 0L);
+        for (Instruction instruction : timeSlot) {
+          for (var clause = instruction; clause != null; clause = clause.getElse()) {
+            if (clause.getListener() != null) {
+              neededWaits[nodeIndex.get(clause.getListener())] |=
+                  channelsAvailable.channelMask(clause.getChannel());
             }
+          }
+        }
+        for (int node = 0; node < nNodes; node++) {
+          var instruction = timeSlot[node];
+          var wait = channelsAvailable.channelMask(instruction.getChannel());
+          if (instruction.isWait() && instruction.length() == 1
+              && (freedWaits[node] & ~neededWaits[node] & wait) != 0) {
+            timeSlot[node] = SLEEP_INSTRUCTION;
+          }
+        }
+        setTimeSlot(schedule, row, new InstructionTimeSlot(timeSlot));
+      }
+    }
+    var flowTag = String.format("Flow %s:", flowName);
+    deadlineMisses.removeIf(deadlineMsg -> deadlineMsg.contains(flowTag));
+  }
 
-            // if optimization flag is set, look to see if any optimizations are possible
-            if (optimizationRequested && instructionIndex > 0) {
-              var priorInstructionTimeSlotArrayList = schedule.get(instructionIndex - 1);
-              var priorInstructionTimeSlot = priorInstructionTimeSlotArrayList
-                  .toArray(new String[priorInstructionTimeSlotArrayList.size()]);
-              var priorInstruction = priorInstructionTimeSlot[nodeIndex.get(snk)]; // get
-                                                                                   // instruction
-                                                                                   // scheduled for
-                                                                                   // snk to execute
-                                                                                   // in the prior
-                                                                                   // time slot
-              if (index == (nTx - 1)) {
-                String hasSubstring = String.format("if has(%s", flowName);
-                String elseSubString = "else pull(";
-                if (priorInstruction.contains(hasSubstring)
-                    && !priorInstruction.contains(elseSubString) && !realtimeHART) {
-                  // The sink node is not waiting, so add this instruction as an else to it
-                  // Also need to make sure we haven't already combined a prior instruction by
-                  // moving it to the else clause. May need a smater way to do this later...
-                  // The combined instructions both use channels for their respective time slots!
-                  // The else is being added to the prior time slot, so we need to
-                  // get a new channel for that time slot and put back the channel we extraced from
-                  // this time slot. And of course, clean up if any errors occur
-                  // in the process
-                  var instructionParametersArrayList =
-                      dsl.getInstructionParameters(priorInstruction);
-                  var priorInstructionChannel = UNKNOWN;
-                  if (instructionParametersArrayList.size() == 1) {
-                    var instructionParameters = instructionParametersArrayList.get(0); // get a copy
-                                                                                       // of the
-                                                                                       // parameters
-                    priorInstructionChannel = instructionParameters.getChannel();
-                  } else { // we just checked above that the prior instruction did not have an else
-                           // pull, wait, or sleep. So, there should be only one instruction here
-                    String msg = String.format(
-                        "ERROR: More than one instruction in prior instruction string: %s",
-                        priorInstruction);
-                    System.err.println(msg);
-                  }
-                  workLoad.setNodeChannel(instructionNodeName,
-                      Integer.valueOf(priorInstructionChannel));
-                  channelsAvailable.addChannel(instructionIndex, channel); // return channel for
-                                                                           // this slot
-                  channel = priorInstructionChannel; // update this so that the corresponding wait
-                                                     // uses this channel
-                  newInstruction = priorInstruction + String.format("else pull(%s: %s -> %s, #%s)",
-                      flowName, currentNodeName, snk, priorInstructionChannel); // was channel
-                  instructionIndex -= 1; // set instructionIndex to the priorInstruction index so we
-                                         // replace that slot with the new, optimized instruction
-                  instructionNodeName = snk; // change currntNodeName to the snk node, which is the
-                                             // node name of the prior instruction
-                }
-              } else if ((flowNodeIndex == 0 && index == 0 && e2eFlag)
-                  && !(priorInstruction.contains(SLEEP_INSTRUCTION)
-                      || priorInstruction.contains(WAIT_FRAGMENT))) {
-                // We hit this case when combining the last push of one flow with the first push of
-                // a new flow--making an if has (Fi) push(Fi) else pull pull(Fi+1)
-                // print ("Skipping optimization of combining \(priorInstruction) with
-                // \(newInstruction)\n")
-                // May want to add code here to combine when e2eFlag is true but need to compute new
-                // reliability values given less than 1 probablity that
-                // this first push/now pull will happen
-                // System.err.printf("New instruction is: %s\nPrior instruction is %s\n",
-                // newInstruction, priorInstruction);
-              } else { // not sure when we hit this when combining a sleep or wait() from prior flow
-                       // with a new instruction
-                // Anywhere else? :-) Probably better figure it out!!
-                if (!priorInstruction.contains(ELSE_PULL_FRAGMENT)
-                    && !priorInstruction.contains(WAIT_FRAGMENT)
-                    && !priorInstruction.contains(SLEEP_INSTRUCTION) && !realtimeHART) { // The sink
-                                                                                         // node is
-                                                                                         // not
-                                                                                         // waiting,
-                                                                                         // so add
-                                                                                         // this
-                                                                                         // instruction
-                                                                                         // as an
-                                                                                         // else to
-                                                                                         // it
-                  // Also need to make sure we haven't already combined a prior instruction by
-                  // moving it to the else clause. May need a smarter way to do this later...
-                  var instructionParametersArrayList =
-                      dsl.getInstructionParameters(priorInstruction);
-                  var priorInstructionChannel = UNKNOWN;
-                  var priorInstructionSnk = UNKNOWN;
-                  if (instructionParametersArrayList.size() == 1) {
-                    var instructionParameters = instructionParametersArrayList.get(0); // get a copy
-                                                                                       // of the
-                                                                                       // parameters
-                    priorInstructionSnk = instructionParameters.getSnk();
-                    priorInstructionChannel = instructionParameters.getChannel();
-                  } else { // we just checked above that the prior instruction did not have an else
-                           // pull, wait, or sleep. So, there should be only one instruction here
-                    String msg = String.format(
-                        "ERROR: More than one instruction in prior instruction string: %s",
-                        priorInstruction);
-                    System.err.println(msg);
-                  }
-                  priorSrcInstruction = priorInstructionTimeSlot[nodeIndex.get(currentNodeName)]; // get
-                                                                                                  // instruction
-                                                                                                  // scheduled
-                                                                                                  // for
-                                                                                                  // snk/curentNodeName)
-                                                                                                  // to
-                                                                                                  // execute
-                                                                                                  // in
-                                                                                                  // the
-                                                                                                  // prior
-                                                                                                  // time
-                  if (priorInstructionSnk.equals(currentNodeName)) { // will try to push and pull
-                                                                     // to/from the same node, so
-                                                                     // use the prior instruction
-                                                                     // channel
-                    newInstruction = priorInstruction
-                        + elsePullClause(flowName, currentNodeName, snk, priorInstructionChannel);
-                    instructionIndex -= 1; // set instructionIndex to the priorInstruction index so
-                                           // we replace that slot with the new, optimized
-                                           // instruction
-                    instructionNodeName = snk; // change currntNodeName to the snk node, which is
-                                               // the node name of the prior instruction
-                  } else if (priorSrcInstruction.contains(SLEEP_INSTRUCTION)) { // was
-                                                                                // !priorSrcInstruction.contains("wait(");
-                                                                                // I think it needs
-                                                                                // to be a sleep and
-                                                                                // then we can add a
-                                                                                // wait there
-                    // Make sure the currentNodeName entry for this time slot has a sleep. If so,
-                    // then we combine instructions with new as an else push and add wait at
-                    // currentNodeName
-                    workLoad.setNodeChannel(instructionNodeName,
-                        Integer.valueOf(priorInstructionChannel));
-                    newInstruction = priorInstruction
-                        + elsePullClause(flowName, currentNodeName, snk, priorInstructionChannel); // was
-                                                                                                   // channel
-                    // need to change priorSrcInstruction from sleep to wait on channel
-                    priorSrcInstruction = waitInstruction(priorInstructionChannel); // was channel
-                    priorSrcUpdated = true; // set flag so this instruction is updated when we
-                                            // insert currenInstruction into the
-                                            // currentInstructionTimeSlot
-                    instructionIndex -= 1; // set instructionIndex to the priorInstruction index so
-                                           // we replace that slot with the new, optimized
-                                           // instruction
-                    instructionNodeName = snk; // change currntNodeName to the snk node, which is
-                                               // the node name of the prior instruction
-                  }
-                }
-              }
-            }
-            ArrayList<String> currentInstructionTimeSlotArrayList; // =
-                                                                   // schedule.get(instructionIndex);
-            String[] currentInstructionTimeSlot; // =
-                                                 // currentInstructionTimeSlotArrayList.toArray(new
-                                                 // String[currentInstructionTimeSlotArrayList.size()]);
-            currentNodeInstruction[index] = instructionIndex; // store the slot index for this
-                                                              // instruction
-            if (instructionIndex < schedule.size()) {
-              currentInstructionTimeSlotArrayList = schedule.get(instructionIndex); // load current
-                                                                                    // instruction,
-                                                                                    // in case
-                                                                                    // another
-                                                                                    // instruction
-                                                                                    // is in this
-                                                                                    // time slot for
-                                                                                    // another node
-                                                                                    // that doesn't
-                                                                                    // conflict
-                                                                                    // channels
-              currentInstructionTimeSlot = currentInstructionTimeSlotArrayList
-                  .toArray(new String[currentInstructionTimeSlotArrayList.size()]);
-            } else {
-              currentInstructionTimeSlotArrayList =
-                  new InstructionTimeSlot(nNodes, SLEEP_INSTRUCTION);
-              currentInstructionTimeSlot = currentInstructionTimeSlotArrayList
-                  .toArray(new String[currentInstructionTimeSlotArrayList.size()]);
-            }
-            currentInstructionTimeSlot[nodeIndex.get(instructionNodeName)] = newInstruction; // an
-                                                                                             // error
-                                                                                             // finding
-                                                                                             // the
-                                                                                             // right
-                                                                                             // location
-                                                                                             // will
-                                                                                             // result
-                                                                                             // in
-                                                                                             // location
-                                                                                             // of
-                                                                                             // snk
-                                                                                             // or 0
-            if (priorSrcUpdated) {
-              currentInstructionTimeSlot[nodeIndex.get(currentNodeName)] = priorSrcInstruction; // an
-                                                                                                // error
-                                                                                                // finding
-                                                                                                // the
-                                                                                                // right
-                                                                                                // location
-                                                                                                // will
-                                                                                                // result
-                                                                                                // in
-                                                                                                // location
-                                                                                                // of
-                                                                                                // snk
-                                                                                                // or
-                                                                                                // 0
-            }
-            // If this is a basic push() then the snk node will have the initial wait instruction in
-            // its time slot. Thus, need to add the channel # to that wait
-            var snkInstruction = currentInstructionTimeSlot[nodeIndex.get(snk)]; // get instruction
+  /*
+   * Schedules every instance of flowName in the hyperPeriod into the slots and channels of schedule
+   * that are still free. Instructions already in the schedule stay where they are, although an
+   * optimization may add an else clause to one of them. If admitted is true, the flow is being
+   * added to a program already built, so it only uses channels that no other instruction uses in a
+   * time slot. Returns true if every instance of the flow meets its deadline; each miss is also
+   * added to deadlineMisses.
+   */
+  private Boolean scheduleFlow(ProgramSchedule schedule, String flowName, Integer hyperPeriod,
+      Boolean admitted) {
+    var nTx = 0;// support nTx per transmission, which is set based on input parameter if
+                // nTransmissions == n 0 else flow.nTXperLink
+    var nTransmissions = getNumTransmissions();
+    Boolean realtimeHART = getRealTimeHartFlag();
+    var optimizationRequested = getOptimizationFlag();
+    var newInstruction = SLEEP_INSTRUCTION; // initialize the new Instruction with a sleep
+    var nodeIndex = getNodeMapIndex(); // get the mapping from node names to index in schedule
+    var nNodes = nodeIndex.size();
+    var deadlinesMet = true;
+    var nodesInFlow = workLoad.getNodesInFlow(flowName);
+    var nNodesInFlow = nodesInFlow.length;
+    var e2eFlag = false; // default is to not use e2e to achieve E2E
+    if (nTransmissions == 0) { // use nTx from flow.nTXperLink for realtimeHart and the linkTX
+                               // array otherwise
+      e2eFlag = true; // need to meet e2e to hit E2E for flow
+      if (realtimeHART) {
+        nTx = workLoad.getFlowTxAttemptsPerLink(flowName);
+      } // else we will computer nTx from the linkTx array for the flow as we go
+
+    } else {
+      nTx = nTransmissions;
+    }
+    var snk = "";
+    var linkTxCosts = workLoad.getNumTxAttemptsPerLink(flowName);
+    if (verbose) {
+      var totalCost = workLoad.getTotalTxAttemptsInFlow(flowName);
+      var minCost = nNodesInFlow - 1; // nEdges in the flow is the minimum communication cost,
+                                      // i.e., min nTx to go E2E with no errors
+      workLoad.getOut().printf(
+          "Flow %s has a minimum communication cost of %d and a worst-case communication cost of %d\n",
+          flowName, minCost, totalCost);
+    }
+    if (nTx == 0) { // this is true when !realtimeHART and nTransmssions wasn't specified => nTx
+                    // is dependent on reliability target
+      nTx = linkTxCosts[0]; // set nTx to the nTx for the first link in the flow
+    }
+    var previousNodeInstruction = new Integer[nTx]; // set instruction location in schedule for
+                                                    // previous slots to 0
+    Arrays.fill(previousNodeInstruction, 0); // initialize locations to 0
+    var flowPhase = workLoad.getFlowPhase(flowName); // used to compute latency after done
+                                                     // scheduling this flow
+    var flowLastInstruction = flowPhase; // used to compute latency after done scheduling this
+                                         // flow
+    var flowDeadline = workLoad.getFlowDeadline(flowName); // used to check schedulability for
+                                                           // this flow
+    var flowPeriod = workLoad.getFlowPeriod(flowName);
+    var FlowSrcInstructionTimeSlot = flowPhase; // initialize the time at which the flow's src
+                                                // node can first transmit
+    for (int instance = 0; instance < hyperPeriod / flowPeriod; instance++) {
+      for (int flowNodeIndex = 0; flowNodeIndex < nNodesInFlow - 1; flowNodeIndex++) { // don't
+                                                                                       // push for
+                                                                                       // last
+                                                                                       // node, so
+                                                                                       // stop at
+                                                                                       // node
+                                                                                       // n-1,
+                                                                                       // which is
+                                                                                       // 2 less
+                                                                                       // than
+                                                                                       // count
+        var currentNodeName = nodesInFlow[flowNodeIndex]; // get name of current node in the flow
+                                                          // (aka source of data)
+        if (e2eFlag) {
+          nTx = linkTxCosts[flowNodeIndex]; // set nTx for this link
+        }
+        var currentNodeInstruction = new Integer[nTx]; // store instruction location in schedule
+                                                       // for previous node
+        Arrays.fill(currentNodeInstruction, 0); // initialize the currentNondeInstruction
+        for (int index = 0; index < nTx; index++) { // repeat instruction nTx times so that this
+                                                    // flow meets desired reliability
+          var instructionNodeName = currentNodeName; // name of node for which we write an
+                                                     // instruction in its program
+          Instruction priorSrcInstruction = null; // variable used to store and possibly update the
+                                             // priorSrcInstruction during optimization
+          var priorSrcUpdated = false; // flag to indicate if priorSrcInstruction is updated or
+                                       // not
+          snk = nodesInFlow[flowNodeIndex + 1]; // should get a valid sink node, set name to
+                                                // UNKNOWN if we don't
+          // when not optimizing instructionNodeName is current node, but we might update a
+          // different node's instruction to optimize
+          var phase = instance * flowPeriod + flowPhase; // update phase for the instance of the
+                                                         // flow release, which happens once every
+                                                         // period in the hyperPeriod
+          var firstPossibleSlot = Math.max(phase, FlowSrcInstructionTimeSlot); // make sure
+                                                                               // precedence
+                                                                               // constraints on
+                                                                               // flow are
+                                                                               // preserved
+          Integer instructionIndex = findNextAvailableInstructionTimeSlot(schedule,
+              firstPossibleSlot, flowNodeIndex, index, nTx, previousNodeInstruction,
+              currentNodeInstruction, realtimeHART, optimizationRequested,
+              nodeIndex.get(currentNodeName), nodeIndex.get(snk));
+          // instructionIndex may be beyond the current schedule length because of phases. Increase
+          // schedule and channelsAvailable tables
+          addTimeSlots(schedule, instructionIndex + 1);
+          int channel = findNextAvailableChannel(schedule, instructionNodeName,
+              instructionIndex, nodeIndex.get(currentNodeName), nodeIndex.get(snk), admitted);
+
+          // Now check if we have a valid channel. If not we need to find a new time slot further
+          // down the schedule.
+          // So, initialize the search to start at the current slot and then increase by one each
+          // time we loop if the current slot
+          // Now check if we have a valid channel. If not we need to find a new time slot further
+          // down the schedule.
+          // So, initialize the search to start at the current slot and then increase by one each
+          // time we loop if the current slot
+          while (channel == UNKNOWN_CHANNEL) { // findNextAvailableChannel will return UNKNOWN if no
+                                            // channel was available. In that case, we need to
+                                            // find a new slot for this instruction after the last
+                                            // index found
+            var startSearchIndex = instructionIndex + 1;
+            instructionIndex = findNextAvailableInstructionTimeSlot(schedule, startSearchIndex,
+                flowNodeIndex, index, nTx, previousNodeInstruction, currentNodeInstruction,
+                realtimeHART, optimizationRequested,
+                nodeIndex.get(currentNodeName), nodeIndex.get(snk));
+            addTimeSlots(schedule, instructionIndex + 1);
+            channel = findNextAvailableChannel(schedule, instructionNodeName, instructionIndex,
+                nodeIndex.get(currentNodeName), nodeIndex.get(snk), admitted);
+          }
+          workLoad.setNodeChannel(instructionNodeName, channel);
+          if (realtimeHART) {
+            newInstruction = pushInstruction(flowName, currentNodeName, snk, channel);
+          } else {
+            newInstruction = hasPushInstruction(flowName, currentNodeName, snk, channel);
+          }
+
+          // if optimization flag is set, look to see if any optimizations are possible
+          if (optimizationRequested && instructionIndex > 0) {
+            var priorInstructionTimeSlotArrayList = schedule.get(instructionIndex - 1);
+            var priorInstructionTimeSlot = priorInstructionTimeSlotArrayList
+                .toArray(new Instruction[priorInstructionTimeSlotArrayList.size()]);
+            var priorInstruction = priorInstructionTimeSlot[nodeIndex.get(snk)]; // get
+                                                                                 // instruction
                                                                                  // scheduled for
                                                                                  // snk to execute
-                                                                                 // in the current
+                                                                                 // in the prior
                                                                                  // time slot
-            if (snkInstruction.equals(SLEEP_INSTRUCTION)) {
-              currentInstructionTimeSlot[nodeIndex.get(snk)] = waitInstruction(channel);
-            }
-            if (flowNodeIndex > 0) {
-              var priorNodeName = nodesInFlow[flowNodeIndex - 1];// get name of prior node in the
-                                                                 // flow (aka predecessor)
-              var possibleCombineInstruction =
-                  String.format("if has(%1$s) push(%1$s: %2$s -> %3$s, #", flowName, priorNodeName,
-                      currentNodeName);
-              if (optimizationRequested && !realtimeHART && nTx > 1) { // One more optimization
-                                                                       // possible: combine two
-                                                                       // conditional pushes at the
-                                                                       // same slot involving a
-                                                                       // common node
-                var upstreamNodeInstruction =
-                    currentInstructionTimeSlot[nodeIndex.get(priorNodeName)];
-                var instr = hasPushInstruction(flowName, currentNodeName, snk, channel);
-                if (newInstruction.equals(instr)
-                    && upstreamNodeInstruction.contains(possibleCombineInstruction)
-                    && !upstreamNodeInstruction.contains("else")) {
-                  var instructionParametersArrayList =
-                      dsl.getInstructionParameters(upstreamNodeInstruction);
-                  var upstreamNodeChannel = UNKNOWN;
-                  if (instructionParametersArrayList.size() == 1) {
-                    var instructionParameters = instructionParametersArrayList.get(0); // get a copy
-                                                                                       // of the
-                                                                                       // paramaters
-                    upstreamNodeChannel = instructionParameters.getChannel();
-                    // return upstreamNodeChannel to the available channels for this time slot
-                    channelsAvailable.addChannel(instructionIndex, upstreamNodeChannel);
-                  } else { // we just checked above that the prior instruction did not have an else
-                           // pull, wait, or sleep. So, there should be only one instruction here
-                    String msg = String.format(
-                        "ERROR: More than one instruction in upstream node  instruction string: %s",
-                        upstreamNodeInstruction);
-                    System.err.println(msg);
-                  }
-                  // use the newInstruction channel in upstream instruction that is being combined
-                  // and return the upstream channel to the available channel set
-                  newInstruction = newInstruction
-                      + elsePullClause(flowName, priorNodeName, currentNodeName, channel); // was
-                                                                                           // upstreamNodeChannel
-                  currentInstructionTimeSlot[nodeIndex.get(instructionNodeName)] = newInstruction; // an
-                                                                                                   // error
-                                                                                                   // finding
-                                                                                                   // the
-                                                                                                   // right
-                                                                                                   // location
-                                                                                                   // will
-                                                                                                   // result
-                                                                                                   // in
-                                                                                                   // location
-                                                                                                   // of
-                                                                                                   // snk
-                                                                                                   // or
-                                                                                                   // 0
-                  currentInstructionTimeSlot[nodeIndex.get(priorNodeName)] =
-                      waitInstruction(channel);; // an error finding the right location will result
-                                                 // in location of snk or 0 // was
-                                                 // upstreamNodeChannel
-                } else if (newInstruction
-                    .contains(elsePullClause(flowName, priorNodeName, currentNodeName, channel))
-                    && currentInstructionTimeSlot[nodeIndex.get(priorNodeName)]
-                        .contains(possibleCombineInstruction)) {
-                  currentInstructionTimeSlot[nodeIndex.get(priorNodeName)] =
-                      waitInstruction(channel); // Replace combined instruction in prior node
-                                                // program with wait()
+            if (index == (nTx - 1)) {
+              if (priorInstruction.hasFlowGuard(flowName) && !priorInstruction.hasElsePull()
+                  && !realtimeHART) {
+                // The sink node is not waiting, so add this instruction as an else to it
+                // Also need to make sure we haven't already combined a prior instruction by
+                // moving it to the else clause. May need a smater way to do this later...
+                // The combined instructions both use channels for their respective time slots!
+                // The else is being added to the prior time slot, so we need to
+                // get a new channel for that time slot and put back the channel we extraced from
+                // this time slot. And of course, clean up if any errors occur
+                // in the process
+                var priorInstructionChannel = UNKNOWN_CHANNEL;
+                if (priorInstruction.length() == 1) {
+                  priorInstructionChannel = priorInstruction.getChannel();
+                } else { // we just checked above that the prior instruction did not have an else
+                         // pull, wait, or sleep. So, there should be only one instruction here
+                  String msg = String.format(
+                      "ERROR: More than one instruction in prior instruction string: %s",
+                      priorInstruction);
+                  workLoad.getErr().println(msg);
                 }
+                workLoad.setNodeChannel(instructionNodeName, priorInstructionChannel);
+                channelsAvailable.addChannel(instructionIndex, channel); // return channel for
+                                                                         // this slot
+                channel = priorInstructionChannel; // update this so that the corresponding wait
+                                                   // uses this channel
+                newInstruction = priorInstruction.orElse(
+                    elsePullClause(flowName, currentNodeName, snk, priorInstructionChannel)); // was
+                                                                                              // channel
+                instructionIndex -= 1; // set instructionIndex to the priorInstruction index so we
+                                       // replace that slot with the new, optimized instruction
+                instructionNodeName = snk; // change currntNodeName to the snk node, which is the
+                                           // node name of the prior instruction
               }
-              if (!realtimeHART && nTx > 1) { // WARP schedule with multiple tx per link requested,
-                                              // so add 'else wait()' for down upstream node when
-                                              // needed
-                var upstreamNodeInstruction =
-                    currentInstructionTimeSlot[nodeIndex.get(priorNodeName)];
-                if (newInstruction
-                    .equals(hasPushInstruction(flowName, currentNodeName, snk, channel))
-                    && upstreamNodeInstruction.contains(possibleCombineInstruction)) {
-                  String upstreamNodeChannel =
-                      getFirstChannelInInstruction(upstreamNodeInstruction);
-                  newInstruction = newInstruction + elseWaitInstruction(upstreamNodeChannel); // this
-                                                                                              // node
-                                                                                              // needs
-                                                                                              // to
-                                                                                              // wait
-                                                                                              // for
-                                                                                              // upstream
-                                                                                              // node
-                                                                                              // if
-                                                                                              // message
-                                                                                              // hasn't
-                                                                                              // arrived
-                  currentInstructionTimeSlot[nodeIndex.get(instructionNodeName)] = newInstruction; // an
-                                                                                                   // error
-                                                                                                   // finding
-                                                                                                   // the
-                                                                                                   // right
-                                                                                                   // location
-                                                                                                   // will
-                                                                                                   // result
-                                                                                                   // in
-                                                                                                   // location
-                                                                                                   // of
-                                                                                                   // snk
-                                                                                                   // or
-                                                                                                   // 0
-                  // Don't replace the push instruction in the upstream node in this case, because
-                  // we added the else in this nodes time slot instead
+            } else if ((flowNodeIndex == 0 && index == 0 && e2eFlag)
+                && !(priorInstruction.isSleep() || priorInstruction.hasWait())) {
+              // We hit this case when combining the last push of one flow with the first push of
+              // a new flow--making an if has (Fi) push(Fi) else pull pull(Fi+1)
+              // print ("Skipping optimization of combining \(priorInstruction) with
+              // \(newInstruction)\n")
+              // May want to add code here to combine when e2eFlag is true but need to compute new
+              // reliability values given less than 1 probablity that
+              // this first push/now pull will happen
+              // System.err.printf("New instruction is: %s\nPrior instruction is %s\n",
+              // newInstruction, priorInstruction);
+            } else { // not sure when we hit this when combining a sleep or wait() from prior flow
+                     // with a new instruction
+              // Anywhere else? :-) Probably better figure it out!!
+              if (!priorInstruction.hasElsePull() && !priorInstruction.hasWait()
+                  && !priorInstruction.isSleep() && !realtimeHART) { // The sink
+                                                                                       // node is
+                                                                                       // not
+                                                                                       // waiting,
+                                                                                       // so add
+                                                                                       // this
+                                                                                       // instruction
+                                                                                       // as an
+                                                                                       // else to
+                                                                                       // it
+                // Also need to make sure we haven't already combined a prior instruction by
+                // moving it to the else clause. May need a smarter way to do this later...
+                var priorInstructionChannel = UNKNOWN_CHANNEL;
+                var priorInstructionSnk = UNKNOWN;
+                if (priorInstruction.length() == 1) {
+                  priorInstructionSnk = priorInstruction.getSnk();
+                  priorInstructionChannel = priorInstruction.getChannel();
+                } else { // we just checked above that the prior instruction did not have an else
+                         // pull, wait, or sleep. So, there should be only one instruction here
+                  String msg = String.format(
+                      "ERROR: More than one instruction in prior instruction string: %s",
+                      priorInstruction);
+                  workLoad.getErr().println(msg);
+                }
+                priorSrcInstruction = priorInstructionTimeSlot[nodeIndex.get(currentNodeName)]; // get
+                                                                                                // instruction
+                                                                                                // scheduled
+                                                                                                // for
+                                                                                                // snk/curentNodeName)
+                                                                                                // to
+                                                                                                // execute
+                                                                                                // in
+                                                                                                // the
+                                                                                                // prior
+                                                                                                // time
+                if (priorInstructionSnk.equals(currentNodeName)) { // will try to push and pull
+                                                                   // to/from the same node, so
+                                                                   // use the prior instruction
+                                                                   // channel
+                  newInstruction = priorInstruction
+                      .orElse(elsePullClause(flowName, currentNodeName, snk, priorInstructionChannel));
+                  instructionIndex -= 1; // set instructionIndex to the priorInstruction index so
+                                         // we replace that slot with the new, optimized
+                                         // instruction
+                  instructionNodeName = snk; // change currntNodeName to the snk node, which is
+                                             // the node name of the prior instruction
+                } else if (priorSrcInstruction.isSleep()) { // was
+                                                                              // !priorSrcInstruction.contains("wait(");
+                                                                              // I think it needs
+                                                                              // to be a sleep and
+                                                                              // then we can add a
+                                                                              // wait there
+                  // Make sure the currentNodeName entry for this time slot has a sleep. If so,
+                  // then we combine instructions with new as an else push and add wait at
+                  // currentNodeName
+                  workLoad.setNodeChannel(instructionNodeName, priorInstructionChannel);
+                  newInstruction = priorInstruction
+                      .orElse(elsePullClause(flowName, currentNodeName, snk, priorInstructionChannel)); // was
+                                                                                                        // channel
+                  // need to change priorSrcInstruction from sleep to wait on channel
+                  priorSrcInstruction = waitInstruction(priorInstructionChannel); // was channel
+                  priorSrcUpdated = true; // set flag so this instruction is updated when we
+                                          // insert currenInstruction into the
+                                          // currentInstructionTimeSlot
+                  instructionIndex -= 1; // set instructionIndex to the priorInstruction index so
+                                         // we replace that slot with the new, optimized
+                                         // instruction
+                  instructionNodeName = snk; // change currntNodeName to the snk node, which is
+                                             // the node name of the prior instruction
                 }
               }
             }
-            var timeSlot = new InstructionTimeSlot(currentInstructionTimeSlot);
-            if (instructionIndex < schedule.size()) { // This should always be the case, but check
-                                                      // anyway
-              schedule.set(instructionIndex, timeSlot);
-            } else {
-              schedule.add(timeSlot);
-              String msg = String.format(
-                  "ERROR: instructionIndex = %d > schedule length = %d. Appended instruction to avoid crash or throw...",
-                  instructionIndex, schedule.size());
-              System.err.println(msg);
-              System.err.println(
-                  "\tProbably due to a flow having a phase > 0. Need to addjust schedule to have one hyperperiod as a startup period in this case");
+          }
+          ArrayList<Instruction> currentInstructionTimeSlotArrayList; // =
+                                                                      // schedule.get(instructionIndex);
+          Instruction[] currentInstructionTimeSlot; // =
+                                                    // currentInstructionTimeSlotArrayList.toArray(new
+                                                    // Instruction[currentInstructionTimeSlotArrayList.size()]);
+          currentNodeInstruction[index] = instructionIndex; // store the slot index for this
+                                                            // instruction
+          if (instructionIndex < schedule.size()) {
+            currentInstructionTimeSlotArrayList = schedule.get(instructionIndex); // load current
+                                                                                  // instruction,
+                                                                                  // in case
+                                                                                  // another
+                                                                                  // instruction
+                                                                                  // is in this
+                                                                                  // time slot for
+                                                                                  // another node
+                                                                                  // that doesn't
+                                                                                  // conflict
+                                                                                  // channels
+            currentInstructionTimeSlot = currentInstructionTimeSlotArrayList
+                .toArray(new Instruction[currentInstructionTimeSlotArrayList.size()]);
+          } else {
+            currentInstructionTimeSlotArrayList =
+                new InstructionTimeSlot(nNodes, SLEEP_INSTRUCTION);
+            currentInstructionTimeSlot = currentInstructionTimeSlotArrayList
+                .toArray(new Instruction[currentInstructionTimeSlotArrayList.size()]);
+          }
+          currentInstructionTimeSlot[nodeIndex.get(instructionNodeName)] = newInstruction; // an
+                                                                                           // error
+                                                                                           // finding
+                                                                                           // the
+                                                                                           // right
+                                                                                           // location
+                                                                                           // will
+                                                                                           // result
+                                                                                           // in
+                                                                                           // location
+                                                                                           // of
+                                                                                           // snk
+                                                                                           // or 0
+          if (priorSrcUpdated) {
+            currentInstructionTimeSlot[nodeIndex.get(currentNodeName)] = priorSrcInstruction; // an
+                                                                                              // error
+                                                                                              // finding
+                                                                                              // the
+                                                                                              // right
+                                                                                              // location
+                                                                                              // will
+                                                                                              // result
+                                                                                              // in
+                                                                                              // location
+                                                                                              // of
+                                                                                              // snk
+                                                                                              // or
+                                                                                              // 0
+          }
+          // If this is a basic push() then the snk node will have the initial wait instruction in
+          // its time slot. Thus, need to add the channel # to that wait
+          var snkInstruction = currentInstructionTimeSlot[nodeIndex.get(snk)]; // get instruction
+                                                                               // scheduled for
+                                                                               // snk to execute
+                                                                               // in the current
+                                                                               // time slot
+          if (snkInstruction.isSleep()) {
+            currentInstructionTimeSlot[nodeIndex.get(snk)] = waitInstruction(channel);
+          }
+          if (flowNodeIndex > 0) {
+            var priorNodeName = nodesInFlow[flowNodeIndex - 1];// get name of prior node in the
+                                                               // flow (aka predecessor)
+            if (optimizationRequested && !realtimeHART && nTx > 1) { // One more optimization
+                                                                     // possible: combine two
+                                                                     // conditional pushes at the
+                                                                     // same slot involving a
+                                                                     // common node
+              var upstreamNodeInstruction =
+                  currentInstructionTimeSlot[nodeIndex.get(priorNodeName)];
+              var instr = hasPushInstruction(flowName, currentNodeName, snk, channel);
+              if (newInstruction.equals(instr)
+                  && upstreamNodeInstruction.hasGuardedPush(flowName, priorNodeName,
+                      currentNodeName)
+                  && upstreamNodeInstruction.getElse() == null) {
+                var upstreamNodeChannel = UNKNOWN_CHANNEL;
+                if (upstreamNodeInstruction.length() == 1) {
+                  upstreamNodeChannel = upstreamNodeInstruction.getChannel();
+                  // return upstreamNodeChannel to the available channels for this time slot
+                  channelsAvailable.addChannel(instructionIndex, upstreamNodeChannel);
+                } else { // we just checked above that the prior instruction did not have an else
+                         // pull, wait, or sleep. So, there should be only one instruction here
+                  String msg = String.format(
+                      "ERROR: More than one instruction in upstream node  instruction string: %s",
+                      upstreamNodeInstruction);
+                  workLoad.getErr().println(msg);
+                }
+                // use the newInstruction channel in upstream instruction that is being combined
+                // and return the upstream channel to the available channel set
+                newInstruction = newInstruction
+                    .orElse(elsePullClause(flowName, priorNodeName, currentNodeName, channel)); // was
+                                                                                                // upstreamNodeChannel
+                currentInstructionTimeSlot[nodeIndex.get(instructionNodeName)] = newInstruction; // an
+                                                                                                 // error
+                                                                                                 // finding
+                                                                                                 // the
+                                                                                                 // right
+                                                                                                 // location
+                                                                                                 // will
+                                                                                                 // result
+                                                                                                 // in
+                                                                                                 // location
+                                                                                                 // of
+                                                                                                 // snk
+                                                                                                 // or
+                                                                                                 // 0
+                currentInstructionTimeSlot[nodeIndex.get(priorNodeName)] =
+                    waitInstruction(channel);; // an error finding the right location will result
+                                               // in location of snk or 0 // was
+                                               // upstreamNodeChannel
+              } else if (newInstruction.hasElsePull(flowName, priorNodeName, currentNodeName,
+                  channel)
+                  && currentInstructionTimeSlot[nodeIndex.get(priorNodeName)]
+                      .hasGuardedPush(flowName, priorNodeName, currentNodeName)) {
+                currentInstructionTimeSlot[nodeIndex.get(priorNodeName)] =
+                    waitInstruction(channel); // Replace combined instruction in prior node
+                                              // program with wait()
+              }
             }
-            flowLastInstruction = instructionIndex;
-            if (index == 0) {
-              FlowSrcInstructionTimeSlot = instructionIndex; // Store the time slot in which the
-                                                             // flow's src node first transmits
+            if (!realtimeHART && nTx > 1) { // WARP schedule with multiple tx per link requested,
+                                            // so add 'else wait()' for down upstream node when
+                                            // needed
+              var upstreamNodeInstruction =
+                  currentInstructionTimeSlot[nodeIndex.get(priorNodeName)];
+              if (newInstruction
+                  .equals(hasPushInstruction(flowName, currentNodeName, snk, channel))
+                  && upstreamNodeInstruction.hasGuardedPush(flowName, priorNodeName,
+                      currentNodeName)) {
+                var upstreamNodeChannel = getFirstChannelInInstruction(upstreamNodeInstruction);
+                newInstruction = newInstruction.orElse(elseWaitInstruction(upstreamNodeChannel)); // this
+                                                                                            // node
+                                                                                            // needs
+                                                                                            // to
+                                                                                            // wait
+                                                                                            // for
+                                                                                            // upstream
+                                                                                            // node
+                                                                                            // if
+                                                                                            // message
+                                                                                            // hasn't
+                                                                                            // arrived
+                currentInstructionTimeSlot[nodeIndex.get(instructionNodeName)] = newInstruction; // an
+                                                                                                 // error
+                                                                                                 // finding
+                                                                                                 // the
+                                                                                                 // right
+                                                                                                 // location
+                                                                                                 // will
+                                                                                                 // result
+                                                                                                 // in
+                                                                                                 // location
+                                                                                                 // of
+                                                                                                 // snk
+                                                                                                 // or
+                                                                                                 // 0
+                // Don't replace the push instruction in the upstream node in this case, because
+                // we added the else in this nodes time slot instead
+              }
             }
           }
-          previousNodeInstruction = currentNodeInstruction; // copy current to previous node...don't
-                                                            // worry about clearing
-                                                            // currentNodeInstrucitons; will be set
-                                                            // in loop
-        }
-        Integer latency = flowLastInstruction - (flowPhase + (instance * flowPeriod)) + 1;
-        String latencyMsg =
-            String.format("Maximum latency for %s:%d is %d\n", flowName, instance, latency);
-        if (verbose) {
-          System.out.printf(latencyMsg);
-        }
-        if (latency > flowDeadline) {
-          String deadlineMsg = String.format(
-              "WARNING: This workload is not schedulable: Flow %s:%d latency %d > deadline %d\n",
-              flowName, instance, latency, flowDeadline);
-          deadlineMisses.add(deadlineMsg);
-          // System.out.printf(deadlineMsg);
+          var timeSlot = new InstructionTimeSlot(currentInstructionTimeSlot);
+          var appended = instructionIndex >= schedule.size(); // This should never be the case,
+                                                              // but check anyway
+          setTimeSlot(schedule, instructionIndex, timeSlot);
+          if (appended) {
+            String msg = String.format(
+                "ERROR: instructionIndex = %d > schedule length = %d. Appended instruction to avoid crash or throw...",
+                instructionIndex, schedule.size());
+            workLoad.getErr().println(msg);
+            workLoad.getErr().println(
+                "\tProbably due to a flow having a phase > 0. Need to addjust schedule to have one hyperperiod as a startup period in this case");
+          }
+          flowLastInstruction = instructionIndex;
+          if (index == 0) {
+            FlowSrcInstructionTimeSlot = instructionIndex; // Store the time slot in which the
+                                                           // flow's src node first transmits
+          }
         }
+        previousNodeInstruction = currentNodeInstruction; // copy current to previous node...don't
+                                                          // worry about clearing
+                                                          // currentNodeInstrucitons; will be set
+                                                          // in loop
+      }
+      Integer latency = flowLastInstruction - (flowPhase + (instance * flowPeriod)) + 1;
+      String latencyMsg =
+          String.format("Maximum latency for %s:%d is %d\n", flowName, instance, latency);
+      if (verbose) {
+        workLoad.getOut().printf(latencyMsg);
+      }
+      if (latency > flowDeadline) {
+        String deadlineMsg = String.format(
+            "WARNING: This workload is not schedulable: Flow %s:%d latency %d > deadline %d\n",
+            flowName, instance, latency, flowDeadline);
+        deadlineMisses.add(deadlineMsg);
+        deadlinesMet = false;
+        // System.out.printf(deadlineMsg);
       }
     }
-    setSchedule(schedule); // store the schedule built
+    return deadlinesMet;
   }
 
-  private String waitInstruction(String channel) {
-    var size = channel.length();
-    if (!Utilities.isInteger(channel)) {
-      System.out.println("channel length is " + String.valueOf(size));
-      System.err.println("ERROR: channel is not an Integer: " + channel);
+  private Instruction waitInstruction(int channel) {
+    if (channel == UNKNOWN_CHANNEL) {
+      workLoad.getErr().println("ERROR: wait instruction has an unknown channel");
     }
-    return String.format("wait(#%s)", channel);
+    return Instruction.wait(channel);
   }
 
-
-  private String elseWaitInstruction(String channel) {
-    var size = channel.length();
-    if (!Utilities.isInteger(channel)) {
-      System.err.println("ERROR: channel is not an Integer: " + channel);
-      System.err.println("\t channel size is not an Integer: " + String.valueOf(size));
+  /* returns the wait clause to append to an instruction with orElse() */
+  private Instruction elseWaitInstruction(int channel) {
+    if (channel == UNKNOWN_CHANNEL) {
+      workLoad.getErr().println("ERROR: else wait clause has an unknown channel");
     }
-    return String.format(" else wait(#%s)", channel);
+    return Instruction.wait(channel);
   }
 
-  private String elsePullClause(String flow, String src, String snk, String channel) {
-    return String.format(" else pull(%s: %s -> %s, #%s)", flow, src, snk, channel);
+  /* returns the pull clause to append to an instruction with orElse() */
+  private Instruction elsePullClause(String flow, String src, String snk, int channel) {
+    return Instruction.pull(flow, src, snk, channel);
   }
 
-  private String hasPushInstruction(String flow, String src, String snk, String channel) {
-    return String.format("if has(%1$s) push(%1$s: %2$s -> %3$s, #%4$s)", flow, src, snk, channel);
+  private Instruction hasPushInstruction(String flow, String src, String snk, int channel) {
+    return Instruction.push(flow, src, snk, channel).ifHas();
   }
 
-  private String pushInstruction(String flow, String src, String snk, String channel) {
-    return String.format("push(%1$s: %2$s -> %3$s, #%4$s)", flow, src, snk, channel);
+  private Instruction pushInstruction(String flow, String src, String snk, int channel) {
+    return Instruction.push(flow, src, snk, channel);
   }
 
-  private String getFirstChannelInInstruction(String Instruction) {
-    var beginIndex = Instruction.indexOf('#') + 1; // get index of the start of the channel #
-    var endIndex = Instruction.indexOf(')', beginIndex); // get index of the last character of the
-                                                         // channel #
-    var channel = Instruction.substring(beginIndex, endIndex); // this substring has the 1st channel
-    return channel;
+  private int getFirstChannelInInstruction(Instruction instruction) {
+    return instruction.getChannel(); // the head clause has the 1st channel
   }
 
   private Integer findNextAvailableInstructionTimeSlot(ProgramSchedule schedule,
       Integer startLocation, Integer nodeInFlow, Integer transIndex, Integer nTx,
-      Integer[] previousNodeInstruction, Integer[] currentNodeInstruction, String sleepInstruction,
-      Boolean realtimeHART, Boolean optimizationRequested, Integer srcNodeIndex,
-      Integer snkNodeIndex) {
+      Integer[] previousNodeInstruction, Integer[] currentNodeInstruction, Boolean realtimeHART,
+      Boolean optimizationRequested, Integer srcNodeIndex, Integer snkNodeIndex) {
     var currentTime = startLocation; // Make sure we don't start looking before the starting
                                      // location
     if (transIndex > 0) {
@@ -770,24 +856,16 @@ public class Program implements SystemAttributes {
                                                                                      // instruction
                                                                                      // we inserted
     }
-    var done = false; // Flag indicating time slot search is done
     if (realtimeHART || (nTx == 1 || nodeInFlow == 0 || transIndex >= nTx - 1)) {
       // do the same thing for all nodes when nTx == 1 as for first node of flow when nTx == 1 and
       // for kth retry
-      while (currentTime < schedule.size() && !done) {
-        var currentInstructionTimeSlot = schedule.get(currentTime);
-        if (slotIsAvailable(currentInstructionTimeSlot, srcNodeIndex, snkNodeIndex)) {
-          done = true;
-        } else {
-          currentTime += 1;
-        }
-      }
+      currentTime = nextAvailableSlot(currentTime, srcNodeIndex, snkNodeIndex);
     } else { // !reatimeHART and (nTx > 1 and nodeInFlow > 0)
-      Integer slotOffsetFromLastPreviousInstructionEntry;
+      Integer possibleInstructionTimeSlotIndex;
       if (transIndex >= (previousNodeInstruction.length - 1)) {
-        slotOffsetFromLastPreviousInstructionEntry =
+        var slotOffsetFromLastPreviousInstructionEntry =
             transIndex - (previousNodeInstruction.length - 1) + 1;
-        var possibleInstructionTimeSlotIndex =
+        possibleInstructionTimeSlotIndex =
             previousNodeInstruction[previousNodeInstruction.length - 1]
                 + slotOffsetFromLastPreviousInstructionEntry; // same as previous node's next retry
                                                               // entry
@@ -798,61 +876,14 @@ public class Program implements SystemAttributes {
           // unavailability)
           currentTime = possibleInstructionTimeSlotIndex; // OK to update to this time slot index
         }
-        done = false; // However, we need to check if the current slot is available, and if not keep
-                      // searching until we find one. This happens with preemptions
-        if (!optimizationRequested) {
-          while (currentTime < schedule.size() && !done) {
-            var currentInstructionTimeSlot = schedule.get(currentTime);
-            if (slotIsAvailable(currentInstructionTimeSlot, srcNodeIndex, snkNodeIndex)) { // get
-                                                                                           // the
-                                                                                           // proposed
-                                                                                           // currentInstructionTimeSlot.
-                                                                                           // If
-                                                                                           // available,
-                                                                                           // done
-                                                                                           // is
-                                                                                           // true,
-                                                                                           // else
-                                                                                           // keep
-                                                                                           // checking
-                                                                                           // for a
-                                                                                           // time
-              done = true;
-            } else {
-              currentTime += 1;
-            }
-          }
-        } else {
-          // do something to support the optimization
-          while (currentTime < schedule.size() && !done) {
-            var currentInstructionTimeSlot = schedule.get(currentTime);
-            if (slotIsAvailable(currentInstructionTimeSlot, srcNodeIndex, snkNodeIndex)) { // get
-                                                                                           // the
-                                                                                           // proposed
-                                                                                           // currentInstructionTimeSlot.
-                                                                                           // If
-                                                                                           // available,
-                                                                                           // done
-                                                                                           // is
-                                                                                           // true,
-                                                                                           // else
-                                                                                           // keep
-                                                                                           // checking
-                                                                                           // for a
-                                                                                           // time
-              done = true;
-            } else {
-              currentTime += 1;
-            }
-          }
-        }
+        // However, we need to check if the current slot is available, and if not keep searching
+        // until we find one. This happens with preemptions
+        currentTime = nextAvailableSlot(currentTime, srcNodeIndex, snkNodeIndex);
       } else {
-        var possibleInstructionTimeSlotIndex = previousNodeInstruction[transIndex + 1]; // same as
-                                                                                        // previous
-                                                                                        // node's
-                                                                                        // next
-                                                                                        // retry
-                                                                                        // entry
+        possibleInstructionTimeSlotIndex = previousNodeInstruction[transIndex + 1]; // same as
+                                                                                    // previous
+                                                                                    // node's next
+                                                                                    // retry entry
         if (startLocation <= possibleInstructionTimeSlotIndex) { // make sure this time isn't
                                                                  // earlier than the starting
                                                                  // location
@@ -860,91 +891,36 @@ public class Program implements SystemAttributes {
           // unavailability)
           currentTime = possibleInstructionTimeSlotIndex; //
         }
-        done = false; // However, we need to check if the current slot is available, and if not keep
-                      // searching until we find one. This happens with preemptions
+        // However, we need to check if the current slot is available, and if not keep searching
+        // until we find one. This happens with preemptions
         if (!optimizationRequested) {
-          while (currentTime < schedule.size() && !done) {
-            var currentInstructionTimeSlot = schedule.get(currentTime);
-            if (slotIsAvailable(currentInstructionTimeSlot, srcNodeIndex, snkNodeIndex)) { // get
-                                                                                           // the
-                                                                                           // proposed
-                                                                                           // currentInstructionTimeSlot.
-                                                                                           // If
-                                                                                           // available,
-                                                                                           // done
-                                                                                           // is
-                                                                                           // true,
-                                                                                           // else
-                                                                                           // keep
-                                                                                           // checking
-                                                                                           // for a
-                                                                                           // time
-              done = true;
-            } else {
-              currentTime += 1;
-            }
-          }
-        } else {
-          // do something to support the optimization
-          if (currentTime < schedule.size()) { // First make sure we haven't exceeded the current
-                                               // schedule table. If so, no need to optimize.
-            // Just return current time and let caller figure out what to do.
-            var tmpInstructionTimeSlot = schedule.get(currentTime);
-            var srcInstruction = tmpInstructionTimeSlot.get(srcNodeIndex);
-            var snkInstruction = tmpInstructionTimeSlot.get(snkNodeIndex);
-            if (!srcInstruction.contains("wait(") || !snkInstruction.contains("sleep")) { // instruction
-                                                                                          // should
-                                                                                          // contain
-                                                                                          // a wait,
-                                                                                          // so we
-                                                                                          // can use
-                                                                                          // it
-                                                                                          // during
-                                                                                          // optimization.
-                                                                                          // Only a
-                                                                                          // wait
-                                                                                          // for
-                                                                                          // this
-                                                                                          // time
-                                                                                          // slot is
-                                                                                          // expected
-                                                                                          // at this
-                                                                                          // point
-              // we also need to be sure the snk is sleeping
-              // If either condition is not true, then we need to find another time slot
-              while (currentTime < schedule.size() && !done) {
-                var currentInstructionTimeSlot = schedule.get(currentTime);
-                if (slotIsAvailable(currentInstructionTimeSlot, srcNodeIndex, snkNodeIndex)) { // get
-                                                                                               // the
-                                                                                               // proposed
-                                                                                               // currentInstructionTimeSlot.
-                                                                                               // If
-                                                                                               // available,
-                                                                                               // done
-                                                                                               // is
-                                                                                               // true,
-                                                                                               // else
-                                                                                               // keep
-                                                                                               // checking
-                                                                                               // for
-                                                                                               // a
-                                                                                               // time
-                  done = true;
-                } else {
-                  currentTime += 1;
-                }
-              }
-            } else if (srcInstruction.contains("else(")) { // This should never be the case, but not
-                                                           // sure if it is bad...print an error
-                                                           // indicating the issue
-              var errorString = String.format(
-                  "POSSIBLE ERROR, but not sure...   At time slot %d of the schedule, ",
-                  currentTime);
-              errorString +=
-                  "instruction for the src node contains\n   an unexpected 'else wait' instruction:";
-              errorString += srcInstruction;
-              System.err.println(errorString);
-            }
+          currentTime = nextAvailableSlot(currentTime, srcNodeIndex, snkNodeIndex);
+        } else if (currentTime < schedule.size()) { // First make sure we haven't exceeded the
+                                                    // current schedule table. If so, no need to
+                                                    // optimize. Just return current time and let
+                                                    // caller figure out what to do.
+          var srcInstruction = schedule.get(currentTime, srcNodeIndex);
+          var snkInstruction = schedule.get(currentTime, snkNodeIndex);
+          if (!srcInstruction.hasWait() || !snkInstruction.isSleep()) { // instruction should
+                                                                        // contain a wait, so we
+                                                                        // can use it during
+                                                                        // optimization. Only a
+                                                                        // wait for this time slot
+                                                                        // is expected at this
+                                                                        // point
+            // we also need to be sure the snk is sleeping
+            // If either condition is not true, then we need to find another time slot
+            currentTime = nextAvailableSlot(currentTime, srcNodeIndex, snkNodeIndex);
+          } else if (srcInstruction.getElse() != null && srcInstruction.getElse().hasWait()) {
+            // This should never be the case, but not sure if it is bad...print an error
+            // indicating the issue
+            var errorString = String.format(
+                "POSSIBLE ERROR, but not sure...   At time slot %d of the schedule, ",
+                currentTime);
+            errorString +=
+                "instruction for the src node contains\n   an unexpected 'else wait' instruction:";
+            errorString += srcInstruction;
+            workLoad.getErr().println(errorString);
           }
         }
       }
@@ -952,102 +928,89 @@ public class Program implements SystemAttributes {
     return currentTime;
   }
 
-  private Boolean slotIsAvailable(InstructionTimeSlot currentInstructionTimeSlot,
-      Integer srcNodeIndex, Integer snkNodeIndex) {
-    var vacantSlot = false; // assume slot is not vacant ----// Flag indicating time slot search is
-                            // done
-    if (SLEEP_INSTRUCTION.equals(currentInstructionTimeSlot.get(srcNodeIndex))
-        && SLEEP_INSTRUCTION.equals(currentInstructionTimeSlot.get(snkNodeIndex))) { // src and snk
-                                                                                     // are both
-                                                                                     // sleeping, so
-                                                                                     // slot is
-                                                                                     // available
-      vacantSlot = true;
+  /*
+   * Returns the first slot at or after startTime in which both the src and snk nodes are sleeping.
+   * The busy slot sets of the two nodes leapfrog each other until they agree on a free slot. Slots
+   * past the end of the schedule are never busy, so the search returns the schedule length when
+   * there is no free slot in the schedule, just like walking the schedule one slot at a time.
+   */
+  private Integer nextAvailableSlot(Integer startTime, Integer srcNodeIndex,
+      Integer snkNodeIndex) {
+    var srcBusySlots = busySlots[srcNodeIndex];
+    var snkBusySlots = busySlots[snkNodeIndex];
+    var srcFree = srcBusySlots.nextClearBit(startTime);
+    var snkFree = snkBusySlots.nextClearBit(srcFree);
+    while (srcFree != snkFree) {
+      srcFree = srcBusySlots.nextClearBit(snkFree);
+      snkFree = snkBusySlots.nextClearBit(srcFree);
     }
-    return vacantSlot;
+    return srcFree;
   }
 
-  private String findNextAvailableChannel(ProgramSchedule schedule, String nodeName,
-      Integer currentTime, Integer srcNodeIndex, Integer snkNodeIndex) {
-
-    var newChannel = UNKNOWN; // indicates no channel was available. The caller will need to check
-                              // this result
+  /*
+   * Stores timeSlot at index in the schedule and records which nodes are busy (i.e., not sleeping)
+   * and which channels are used in that slot. All schedule writes go through here or
+   * addTimeSlots(), so that the busy slot sets and the channels available always match the
+   * schedule.
+   */
+  private void setTimeSlot(ProgramSchedule schedule, Integer index, InstructionTimeSlot timeSlot) {
+    if (index < schedule.size()) {
+      schedule.set(index.intValue(), timeSlot);
+    } else {
+      schedule.add(timeSlot);
+    }
+    var usedChannels = 0L;
+    for (int node = 0; node < timeSlot.size(); node++) {
+      var instruction = timeSlot.get(node);
+      busySlots[node].set(index, !instruction.isSleep());
+      usedChannels |= channelsUsed(instruction);
+    }
+    channelsAvailable.setChannelsUsed(index, usedChannels);
+  }
 
-    // create an instance of the Warp DSL class for parsing instructions
-    var dsl = new WarpDSL();
-    InstructionTimeSlot priorInstructionTimeSlot;
+  /*
+   * Appends sleeping time slots to the schedule, with channels available, until the schedule has
+   * numSlots slots. New slots are all sleep instructions, so no node is busy in them.
+   */
+  private void addTimeSlots(ProgramSchedule schedule, Integer numSlots) {
+    for (int i = schedule.size(); i < numSlots; i++) {
+      channelsAvailable.addNewChannelSet();
+    }
+    schedule.extendTo(numSlots);
+  }
 
-    var channels = channelsAvailable.getChannelSet(currentTime);
+  /*
+   * Returns a channel for nodeName to transmit on in currentTime that the src and snk nodes didn't
+   * use in the prior time slot. When the program is built, the channels other nodes use in the
+   * time slot aren't avoided, as the original schedulers have always done. A flow admitted later
+   * only gets a channel that is still available in the time slot.
+   */
+  private int findNextAvailableChannel(ProgramSchedule schedule, String nodeName,
+      Integer currentTime, Integer srcNodeIndex, Integer snkNodeIndex, Boolean admitted) {
+    var priorChannels = 0L; // mask of channels that have to be avoided in this slot
     if (currentTime > 0) { // get the prior schedule time slot to see what channels were used in
                            // that slot, which have to be avoided here
       Integer priorTime = currentTime - 1;
-      priorInstructionTimeSlot = schedule.get(priorTime); // get a copy of the prior time slot
-      var srcPriorInstruction = priorInstructionTimeSlot.get(srcNodeIndex);
-      var snkPriorInstruction = priorInstructionTimeSlot.get(snkNodeIndex);
-
-      // extract the channels used by the src and snk nodes in the prior time slot and store them in
-      // an array
-      var instructionParametersArrayList = dsl.getInstructionParameters(srcPriorInstruction); // get
-                                                                                              // the
-                                                                                              // parameters
-                                                                                              // from
-                                                                                              // the
-                                                                                              // instruction
-                                                                                              // in
-                                                                                              // the
-                                                                                              // src
-                                                                                              // node's
-                                                                                              // prior
-                                                                                              // time
-                                                                                              // slot
-      for (int i = 0; i < instructionParametersArrayList.size(); i++) {
-        var instructionParameters = instructionParametersArrayList.get(i); // get a copy of the
-                                                                           // paramaters
-        channels.remove(instructionParameters.getChannel());
-      }
-      instructionParametersArrayList = dsl.getInstructionParameters(snkPriorInstruction); // get the
-                                                                                          // parameters
-                                                                                          // from
-                                                                                          // the
-                                                                                          // instruction
-                                                                                          // in the
-                                                                                          // snk
-                                                                                          // node's
-                                                                                          // prior
-                                                                                          // time
-                                                                                          // slot
-      for (int i = 0; i < instructionParametersArrayList.size(); i++) {
-        var instructionParameters = instructionParametersArrayList.get(i); // get a copy of the
-                                                                           // paramaters
-        channels.remove(instructionParameters.getChannel());
-      }
-    }
-    Integer channel = workLoad.getNodeChannel(nodeName); // get the last used channel for the node
-    channel++; // increment the channel because we don't use the same channel in consecutive time
-               // slots for the same node
-    if (channel >= getNumChannels()) { // valid range is 0..NumChannels-1. Reset when channel hits
-                                       // max
-      channel = 0;
+      // exclude the channels used by the src and snk nodes in the prior time slot
+      priorChannels = channelsUsed(schedule.get(priorTime, srcNodeIndex))
+          | channelsUsed(schedule.get(priorTime, snkNodeIndex));
     }
-    var channelFound = false;
-    while (!channelFound && !channels.isEmpty()) { // loop until a channel is found or we run out of
-                                                   // channels to assign
-      var channelString = String.valueOf(channel);
-      var channelRemoved = channels.remove(channelString);
-      if (channelRemoved) {
-        // newChannel has the channel
-        newChannel = channelString;
-        channelFound = true;
-      } else {
-        // try another channel
-        channel += 1;
-        if (channel >= getNumChannels()) { // valid range is 0..NumChannels-1. Reset when channel
-                                           // hits max
-          channel = 0;
-        }
-      }
+    // start with the channel after the last one used by the node, because we don't use the same
+    // channel in consecutive time slots for the same node. Channels wrap around at NumChannels.
+    var firstChannel = workLoad.getNodeChannel(nodeName) + 1;
+    // returns UNKNOWN_CHANNEL to indicate no channel found, so the caller tries a later slot
+    return admitted
+        ? channelsAvailable.nextAvailableChannel(currentTime, firstChannel, priorChannels)
+        : channelsAvailable.nextChannel(firstChannel, priorChannels);
+  }
+
+  private long channelsUsed(Instruction instruction) {
+    var channelMask = 0L;
+    for (var clause = instruction; clause != null; clause = clause.getElse()) {
+      channelMask |= channelsAvailable.channelMask(clause.getChannel()); // sleep has NO_CHANNEL,
+                                                                         // which is not a channel
     }
-    return newChannel; // returns UNKNOWN to indicate no channel found. This should never happen.
+    return channelMask;
   }
 
   public void selectPriority() {
@@ -1214,23 +1177,13 @@ public class Program implements SystemAttributes {
 
   /**
    * Returns a mapping of node names to their corresponding indices in the 
-   * schedule table.
+   * schedule table. The indices are the node ids interned by the workload,
+   * so the map is shared and must not be modified.
    *
    * @return A HashMap containing node names as keys indices as values.
    */
   public HashMap<String, Integer> getNodeMapIndex() {
-    var orderedNodes = workLoad.getNodeNamesOrderedAlphabetically(); // create an array of node
-                                                                     // names
-    // sorted alphabetically
-    var nodeIndexMap = new HashMap<String, Integer>(); // create a new mapping from node names to
-                                                       // index in schedule
-    // table
-    var nNodes = orderedNodes.length;
-    for (int index = 0; index < nNodes; index++) { // set up the node to index mapping
-      var name = orderedNodes[index];
-      nodeIndexMap.put(name, index); // add name, index mapping to NodeIndex map
-    }
-    return nodeIndexMap;
+    return workLoad.getNodeIds();
   }
 
 }
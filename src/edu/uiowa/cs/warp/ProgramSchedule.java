@@ -1,8 +1,25 @@
 package edu.uiowa.cs.warp;
 
-public class ProgramSchedule extends Table<String,InstructionTimeSlot> {
+/**
+ * ProgramSchedule is the table of instructions in a WARP program,
+ * with a row for each time slot and a column for each node. This
+ * dense version stores an instruction, including sleep, in every
+ * cell. Use create() to get a schedule whose storage suits its size:
+ * large, mostly sleeping schedules are SparseProgramSchedules.
+ * 
+ * @author sgoddard
+ *
+ */
+public class ProgramSchedule extends Table<Instruction,InstructionTimeSlot> {
 
 	private static final long serialVersionUID = 1L;
+	
+	/* Schedules with more cells than this are stored sparsely. 
+	 * Smaller ones are dense, which is faster for whole row access.
+	 */
+	static final long SPARSE_THRESHOLD = 1L << 22;
+	
+	private Integer numColumns = 0; // columns in the rows added by extendTo()
 
 	// default constructor
 	public ProgramSchedule() {
@@ -11,7 +28,46 @@ public class ProgramSchedule extends Table<String,InstructionTimeSlot> {
 	
 	ProgramSchedule(Integer row, Integer column) {
 		super(row,column);
+		this.numColumns = column;
+	}
+	
+	/**
+	 * Creates an empty schedule with numColumns nodes that will hold
+	 * about numRows time slots. The schedule is sparse if it would 
+	 * have more than SPARSE_THRESHOLD cells and dense otherwise.
+	 * 
+	 * @param numRows the expected number of time slots
+	 * @param numColumns the number of nodes
+	 * @return an empty schedule
+	 */
+	public static ProgramSchedule create(Integer numRows, Integer numColumns) {
+		ProgramSchedule schedule;
+		if ((long) numRows * numColumns > SPARSE_THRESHOLD) {
+			schedule = new SparseProgramSchedule(numColumns);
+		} else {
+			schedule = new ProgramSchedule();
+			schedule.numColumns = numColumns;
+		}
+		return schedule;
+	}
+	
+	/**
+	 * Appends time slots with all nodes sleeping until the schedule
+	 * has numRows time slots. 
+	 * 
+	 * @param numRows the number of time slots required
+	 */
+	public void extendTo(Integer numRows) {
+		for (int i = size(); i < numRows; i++) {
+			add(new InstructionTimeSlot(numColumns, Instruction.sleep()));
+		}
+	}
+	
+	/**
+	 * @return true if sleep instructions are implicit rather than stored
+	 */
+	public Boolean isSparse() {
+		return false;
 	}
 	
 }
-
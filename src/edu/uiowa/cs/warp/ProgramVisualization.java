@@ -3,6 +3,8 @@
  */
 package edu.uiowa.cs.warp;
 
+import java.util.Objects;
+
 /**
  * @author sgoddard
  * @version 1.5
@@ -81,7 +83,7 @@ public class ProgramVisualization extends VisualizationObject {
       for (int row = 0; row < numRows; row++) {
         visualizationData[row][0] = String.format("%s", row);
         for (int column = 0; column < numColumns; column++) {
-          visualizationData[row][column + 1] = sourceCode.get(row, column);
+          visualizationData[row][column + 1] = Objects.toString(sourceCode.get(row, column), null);
         }
       }
     }
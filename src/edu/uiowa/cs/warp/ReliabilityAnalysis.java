@@ -26,13 +26,14 @@ package edu.uiowa.cs.warp;
  * ReliablityMatrix, which is the core of the file visualization that is requested in Warp.
  * <p>
  * 
- * To do this, you will need to retrieve the program source, parse the instructions for each node,
- * in each time slot, to extract the src and snk nodes in the instruction and then apply the message
+ * To do this, you will need to retrieve the program schedule, read the instructions for each node,
+ * in each time slot, to get the src and snk nodes in the instruction and then apply the message
  * success probability equation defined above.
  * <p>
  * 
- * I recommend using the getInstructionParameters method of the WarpDSL class to extract the src and
- * snk nodes from the instruction string in a program schedule time slot.
+ * Each time slot of a program schedule holds an Instruction for each node. I recommend using its
+ * getSrc() and getSnk() methods to get the src and snk nodes of a push or pull, and getElse() to
+ * get to the next clause of an if-else chain, rather than parsing the instruction text.
  * 
  * @author sgoddard
  * @version 1.5
@@ -1,38 +1,43 @@
 package edu.uiowa.cs.warp;
 
+import java.io.PrintStream;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
 import java.util.Queue;
 
 public abstract class SchedulableObject {
 
-	private static final Integer DEFAULT = 0;
-	private static final Integer DEFAULT_PERIOD = 100; 
-	private static final Integer DEFAULT_DEADLINE = 100;
+	private static final int DEFAULT = 0;
+	private static final int DEFAULT_PERIOD = 100; 
+	private static final int DEFAULT_DEADLINE = 100;
 	private static final String UNKNOWN = "unknown";
-	private static final Integer BEFORE_START = -1;
+	private static final int BEFORE_START = -1;
 	
+	/* the scheduling parameters are read and written for every
+	 * probe of the schedule, so they are primitives, which are
+	 * never boxed.
+	 */
 	private String name;
-	private Integer priority;
-	private Integer period;
-	private Integer deadline;
-	private Integer phase;
-	private Integer releaseTime;
-	private Integer startTime;
-	private Integer endTime;
-	private Integer lastUpdateTime = BEFORE_START;
+	private int priority;
+	private int period;
+	private int deadline;
+	private int phase;
+	private int releaseTime;
+	private int startTime;
+	private int endTime;
+	private int lastUpdateTime = BEFORE_START;
 	private SchedulableObject predecessor;
 	/* endTimes are used to keep track of multiple
 	 * releases and executions of this object in
 	 * a hyperPeriod, so that precedence constraints
 	 * are maintained.
 	 */
-	private PriorityQueue<Integer> endTimes;
+	private EndTimeQueue endTimes;
 	/* subObjects contains objects iff this object
 	 * is some combination of the subObjects. In that
 	 * case the the start and end times of this object
 	 * reflect the execution slice of the super object.
 	 * The name will be a combination of the subObjects.
+	 * It is created when the first subObject is added.
 	 */
 	private Queue<SchedulableObject> subObjects;
 	
@@ -50,7 +55,7 @@ public abstract class SchedulableObject {
 	 * @param obj
 	 * @param time
 	 */
-	SchedulableObject(SchedulableObject obj, Integer time){
+	SchedulableObject(SchedulableObject obj, int time){
 		this.name = obj.getName();
 		this.priority = obj.getPriority();
 		this.period = obj.getPeriod();
@@ -61,13 +66,12 @@ public abstract class SchedulableObject {
 		this.releaseTime = obj.getReleaseTime(); // initialize parameters
 		this.lastUpdateTime = time; // reset lastUpdate 
 		this.predecessor = obj.getPredecessor();
-		this.endTimes = new PriorityQueue<Integer>(); 
-		this.endTimes.addAll(obj.getAllEndTimes());
-		this.subObjects = new LinkedList<SchedulableObject>();
-		this.subObjects.addAll(obj.getSubObjects());
-		
+		this.endTimes = new EndTimeQueue(obj.getAllEndTimes());
+		if (obj.subObjects != null) {
+			this.subObjects = new LinkedList<SchedulableObject>(obj.subObjects);
+		}
 	}
-	SchedulableObject(Integer priority, Integer period, Integer deadline, Integer phase){
+	SchedulableObject(int priority, int period, int deadline, int phase){
 		setDefaultParameters();
 		this.priority = priority;
 		this.period = period;
@@ -77,7 +81,7 @@ public abstract class SchedulableObject {
 		this.lastUpdateTime = BEFORE_START; // reset lastUpdate 
 	}
 	
-	SchedulableObject(String name, Integer priority, Integer period, Integer deadline, Integer phase){
+	SchedulableObject(String name, int priority, int period, int deadline, int phase){
 		setDefaultParameters();
 		this.name = name;
 		this.priority = priority;
@@ -97,18 +101,18 @@ public abstract class SchedulableObject {
 		this.startTime = BEFORE_START;
 		this.endTime = BEFORE_START;
 		this.predecessor = null; 
-		this.endTimes = new PriorityQueue<Integer>(); 
-		this.subObjects = new LinkedList<SchedulableObject>();
+		this.endTimes = new EndTimeQueue(); 
+		this.subObjects = null;
 	}
 
 	/**
 	 * @return the endTimes queue
 	 */
-	public PriorityQueue<Integer> getAllEndTimes() {
+	public EndTimeQueue getAllEndTimes() {
 		return endTimes;
 	}
 	
-	public void addToEndTimes(Integer time) {
+	public void addToEndTimes(int time) {
 		/* Add the endTime to the endTimes Q
 		 * so that we can track predecessor endTimes
 		 * and make sure successors don't start before 
@@ -117,8 +121,11 @@ public abstract class SchedulableObject {
 		endTimes.add(time);
 	}
 	
+	/**
+	 * @return the earliest end time, or null if there are none
+	 */
 	public Integer peekEndTimes() {
-		return endTimes.peek();
+		return endTimes.isEmpty() ? null : endTimes.peek();
 	}
 	
 	public void pollEndTimes() {
@@ -126,13 +133,16 @@ public abstract class SchedulableObject {
 	}
 	
 	public void addSubObject(SchedulableObject obj){
-		subObjects.add(obj);
+		getSubObjects().add(obj);
 	}
 	
 	/**
 	 * @return the subObjects
 	 */
 	public Queue<SchedulableObject> getSubObjects(){
+		if (subObjects == null) {
+			subObjects = new LinkedList<SchedulableObject>();
+		}
 		return subObjects;
 	}
 	
@@ -153,56 +163,56 @@ public abstract class SchedulableObject {
 	/**
 	 * @return the priority
 	 */
-	public Integer getPriority() {
+	public int getPriority() {
 		return priority;
 	}
 
 	/**
 	 * @return the releaseTime
 	 */
-	public Integer getReleaseTime() {
+	public int getReleaseTime() {
 		return releaseTime;
 	}
 
 	/**
 	 * @return the period
 	 */
-	public Integer getPeriod() {
+	public int getPeriod() {
 		return period;
 	}
 
 	/**
 	 * @return the deadline
 	 */
-	public Integer getDeadline() {
+	public int getDeadline() {
 		return deadline;
 	}
 
 	/**
 	 * @return the phase
 	 */
-	public Integer getPhase() {
+	public int getPhase() {
 		return phase;
 	}
 
 	/**
 	 * @return the lastUpdateTime
 	 */
-	public Integer getLastUpdateTime() {
+	public int getLastUpdateTime() {
 		return lastUpdateTime;
 	}
 
 	/**
 	 * @return the startTime
 	 */
-	public Integer getStartTime() {
+	public int getStartTime() {
 		return startTime;
 	}
 
 	/**
 	 * @return the endTime
 	 */
-	public Integer getEndTime() {
+	public int getEndTime() {
 		return endTime;
 	}
 
@@ -223,70 +233,70 @@ public abstract class SchedulableObject {
 	/**
 	 * @param endTime the endTime to set
 	 */
-	public void setEndTime(Integer endTime) {
+	public void setEndTime(int endTime) {
 		this.endTime = endTime;
 	}
 
 	/**
 	 * @param startTime the startTime to set
 	 */
-	public void setStartTime(Integer startTime) {
+	public void setStartTime(int startTime) {
 		this.startTime = startTime;
 	}
 
 	/**
 	 * @param releaseTime the releaseTime to set
 	 */
-	public void setReleaseTime(Integer releaseTime) {
+	public void setReleaseTime(int releaseTime) {
 		this.releaseTime = releaseTime;
 	}
 
 	/**
 	 * @param lastUpdateTime the lastUpdateTime to set
 	 */
-	public void setLastUpdateTime(Integer lastUpdateTime) {
+	public void setLastUpdateTime(int lastUpdateTime) {
 		this.lastUpdateTime = lastUpdateTime;
 	}
 
 	/**
 	 * @param period the period to set
 	 */
-	public void setPeriod(Integer period) {
+	public void setPeriod(int period) {
 		this.period = period;
 	}
 
 	/**
 	 * @param deadline the deadline to set
 	 */
-	public void setDeadline(Integer deadline) {
+	public void setDeadline(int deadline) {
 		this.deadline = deadline;
 	}
 
 	/**
 	 * @param phase the phase to set
 	 */
-	public void setPhase(Integer phase) {
+	public void setPhase(int phase) {
 		this.phase = phase;
 	}
 
 	/**
 	 * @param priority the priority to set
 	 */
-	public void setPriority(Integer priority) {
+	public void setPriority(int priority) {
 		this.priority = priority;
 	}
 
 	/**
 	 * @param releaseTime the releaseTime to set
 	 */
-	public void setNextReleaseTime(Integer currentTime) {
+	public void setNextReleaseTime(int currentTime) {
 		if (currentTime >= lastUpdateTime) {
 			// released every (j*period)+phase, for all j >=0
-			Integer j = 0;
+			var j = 0;
 			if (period > 0) {
 				j = (int) Math.ceil((double)currentTime/(double)period); // gives floor
 			} 
-			Integer nextRelease = (j*period)+phase ;
+			var nextRelease = (j*period)+phase ;
 			releaseTime = nextRelease;
 			lastUpdateTime = currentTime;
 		}
@@ -362,18 +372,26 @@ public abstract class SchedulableObject {
 	}
 	
 	public void print(String headerMsg) {
-		System.out.printf("\n%s",headerMsg);
-		print();
+		print(System.out, headerMsg);
 	}
 	
 	public void print() {
-		System.out.printf("\nName: %s\n",getName());
-		System.out.printf("\tPriority: %d\n",getPriority());
-		System.out.printf("\tPeriod: %d\n",getPeriod());
-		System.out.printf("\tDeadline: %d\n",getDeadline());
-		System.out.printf("\tPhase: %d\n", getPhase());
-		System.out.printf("\tReleaseTime: %d\n",getReleaseTime());
-		System.out.printf("\tStartTime: %d\n",getStartTime());
-		System.out.printf("\tEndTime: %d\n",getEndTime());
+		print(System.out);
+	}
+	
+	public void print(PrintStream out, String headerMsg) {
+		out.printf("\n%s",headerMsg);
+		print(out);
+	}
+	
+	public void print(PrintStream out) {
+		out.printf("\nName: %s\n",getName());
+		out.printf("\tPriority: %d\n",getPriority());
+		out.printf("\tPeriod: %d\n",getPeriod());
+		out.printf("\tDeadline: %d\n",getDeadline());
+		out.printf("\tPhase: %d\n", getPhase());
+		out.printf("\tReleaseTime: %d\n",getReleaseTime());
+		out.printf("\tStartTime: %d\n",getStartTime());
+		out.printf("\tEndTime: %d\n",getEndTime());
 	}
 }
@@ -1,9 +1,10 @@
 package edu.uiowa.cs.warp;
 
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.ArrayList;
-
-import edu.uiowa.cs.warp.WarpDSL.InstructionParameters;
+import java.util.BitSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Schedule builds a non-preemptive, priority schedule 
@@ -17,6 +18,12 @@ import edu.uiowa.cs.warp.WarpDSL.InstructionParameters;
 public abstract class Schedule {
 
 	private static final String UNKNOWN = "unknown";
+	/* schedules with fewer channel time slots are translated to 
+	 * code sequentially, because the parallel translation costs 
+	 * more than it saves on them
+	 */
+	private static final int MIN_PARALLEL_SLOTS = 1 << 16;
+	private static Boolean parallelCodeGeneration = true;
 	
 	protected Boolean schedulable;
 	protected Integer numChannels;
@@ -30,6 +37,34 @@ public abstract class Schedule {
 	 */
 	protected ScheduleTable schedule;
 	protected Poset poset; // partially ordered set (poset)
+	/* Index of the time each node is busy, one bitmap row of 
+	 * busyWordsPerNode words per node. Bit t of node n's row is set 
+	 * when an entry in a channel at time t conflicts with node n 
+	 * (i.e., n is in the entry's conflict ids). The index covers 
+	 * channels 0 to numChannels-1 and is kept up to date by 
+	 * setEntry(), which is how all entries are written.
+	 */
+	private long[] nodeBusyTimes;
+	private int busyWordsPerNode;
+	private int numNodes;
+	private BitSet scratchConflictIds = new BitSet();
+	/* times at which entries in channels 0 to numChannels-1 changed
+	 * since the program was last generated (see updateProgram())
+	 */
+	private BitSet changedTimes;
+	/* the probe for each level of nested combination (see combinationProbe()) */
+	private ArrayList<CombinationProbe> probes = new ArrayList<CombinationProbe>();
+
+	/**
+	 * Sets whether the channels of large schedules are translated to
+	 * code in parallel by toProgram(). Either way, the program is 
+	 * the same.
+	 * 
+	 * @param parallel
+	 */
+	public static void setParallelCodeGeneration(Boolean parallel) {
+		parallelCodeGeneration = parallel;
+	}
 
 	Schedule(Poset poset, Integer numChannels) {
 		this.poset = poset;
@@ -41,6 +76,10 @@ public abstract class Schedule {
 			endScheduleTime = maxPhase + 2*endScheduleTime ;
 		}
 		schedule = new ScheduleTable(numChannels+1,endScheduleTime);
+		numNodes = poset.getNumNodes();
+		busyWordsPerNode = (endScheduleTime + Long.SIZE - 1) / Long.SIZE;
+		nodeBusyTimes = new long[numNodes*busyWordsPerNode];
+		changedTimes = new BitSet(endScheduleTime);
 		schedulable = true;
 		buildSchedule();
 	}
@@ -48,6 +87,7 @@ public abstract class Schedule {
 	protected class ScheduleLocation {
 		Integer channel;
 		Integer time;
+		Boolean retry = false; // see retryAt()
 		
 		ScheduleLocation() {
 			this.channel = 0;
@@ -69,8 +109,29 @@ public abstract class Schedule {
 		protected Integer getTime() {
 			return time;
 		}
+		/**
+		 * @return true if the search continues at time
+		 */
+		protected Boolean isRetry() {
+			return retry;
+		}
 		
 	}
+
+	/**
+	 * retryAt returns the location continueSearch() returns when it 
+	 * found no channel and time, which tells findChannelAndTime() to
+	 * continue the search at time.
+	 * 
+	 * @param time the next time to try, which must be later than 
+	 * the time tried
+	 * @return ScheduleLocation
+	 */
+	protected ScheduleLocation retryAt(Integer time) {
+		var location = new ScheduleLocation(numChannels, time);
+		location.retry = true;
+		return location;
+	}
 	
 	/**
 	 * @return the schedule
@@ -80,7 +141,111 @@ public abstract class Schedule {
 	}
 
 	private void buildSchedule() {
+		scheduleActivations();
+		print();
+	}
 
+	/**
+	 * addFlow schedules a flow that was added to the workload after
+	 * this schedule was built. Only the new flow's activations are
+	 * scheduled, in the time and channels still free, so activations
+	 * already in the schedule keep their channels and times. The flow
+	 * must not change the length of the schedule.
+	 *
+	 * @param flowName
+	 * @return true if the schedule is still schedulable
+	 */
+	public Boolean addFlow(String flowName) {
+		poset.addFlow(flowName);
+		scheduleActivations();
+		return schedulable;
+	}
+
+	/**
+	 * removeFlow removes a flow, which was already removed from the
+	 * workload, from this schedule. Entries with only the flow's edges
+	 * are cleared, which frees their channels and times. Combined
+	 * entries are combined again from their members without the flow's
+	 * edges, so they end as soon as the remaining edges allow, and the
+	 * time they no longer need is freed too. Activations of other
+	 * flows are not moved into the freed time.
+	 *
+	 * @param flowName
+	 * @return true if the schedule is schedulable
+	 */
+	public Boolean removeFlow(String flowName) {
+		poset.removeFlow(flowName);
+		/* the same entry fills every time slot from its start to end time */
+		var replacements = new IdentityHashMap<Activation, Activation>();
+		schedulable = true;
+		for (int channel = 0; channel <= numChannels; channel++) {
+			for (int time = 0; time < endScheduleTime; time++) {
+				var entry = schedule.get(channel,time);
+				if (entry != null) {
+					if (!replacements.containsKey(entry)) {
+						replacements.put(entry, withoutFlow(entry, flowName));
+					}
+					var replacement = replacements.get(entry);
+					if (replacement != entry && replacement != null && channel < numChannels
+							&& (time < replacement.getStartTime() || time > replacement.getEndTime())) {
+						replacement = null; // time the remaining edges don't need
+					}
+					if (replacement != entry) {
+						setEntry(channel,time,replacement);
+					}
+					if (replacement != null && channel == numChannels) {
+						/* an unschedulable entry is still recorded */
+						schedulable = false;
+					}
+				}
+			}
+		}
+		return schedulable;
+	}
+
+	/*
+	 * Returns entry without the edges of flowName, or null if all of
+	 * its edges are on flowName. A combined entry is combined again 
+	 * from its last two members, the entries combined to make it, 
+	 * without those edges. If only one member is left, it gets back 
+	 * the time it had before it was combined; otherwise the entry 
+	 * keeps its start time and ends when its remaining edges are done.
+	 */
+	private Activation withoutFlow(Activation entry, String flowName) {
+		var edges = entry.getEdges();
+		if (edges.stream().noneMatch(edge -> edge.getFlow().equals(flowName))) {
+			return entry;
+		}
+		if (edges.stream().allMatch(edge -> edge.getFlow().equals(flowName))) {
+			return null;
+		}
+		Activation result = null;
+		var members = new ArrayList<SchedulableObject>(entry.getSubObjects());
+		var numMembers = members.size();
+		if (entry instanceof CombinedActivation && numMembers >= 2) {
+			var prior = withoutFlow((Activation) members.get(numMembers-2), flowName);
+			var next = withoutFlow((Activation) members.get(numMembers-1), flowName);
+			if (prior == null || next == null) {
+				/* the member left is placed as it was before combining */
+				return (prior == null) ? next : prior;
+			}
+			result = new CombinedActivation(prior, next);
+		} else {
+			result = new Activation(entry, entry.getLastUpdateTime());
+			result.removeEdgesOfFlow(flowName);
+		}
+		var startTime = entry.getStartTime();
+		result.setStartTime(startTime);
+		result.setEndTime(Math.min(entry.getEndTime(), 
+				startTime + result.getExecutionDuration() - 1));
+		return result;
+	}
+
+	/*
+	 * Schedules the activations in the poset's priority queue
+	 * until the queue is empty.
+	 */
+	private void scheduleActivations() {
 		var next = poset.getNextActivation();
 		while (next != null) {
 			/* Add next to the schedule if max of its release time 
@@ -110,45 +275,151 @@ public abstract class Schedule {
 			}
 			next = poset.getNextActivation();
 		}
-		print();
 	}
 
 	
 	public ProgramSchedule toProgram() {
 		var nodeNames = poset.getNodesNamesOrderedAlphabetically();
 		var numNodes = nodeNames.length;
-		var program = new ProgramSchedule(endScheduleTime,numNodes);
-		CodeFragment codeFragment = null;
-		var duration = 0; // default duration for SLEEP;
-		String name = null;
-		var startTime = 0;
-		var endTime = 0;
-		HashMap<String, Integer> nodeIndexMap = new HashMap<>();
+		ProgramSchedule program;
 		
 		if (!schedulable) {
 			/* not Schedulable, so we will not create code */
-			return program; // return empty program
+			changedTimes.set(0, endScheduleTime); // none of it is in the program
+			return new ProgramSchedule(endScheduleTime,numNodes); // return empty program
 		}
 		
-		/* build the nodeIndexMap by putting nodes in alphabetic
-		 * order and then hashing its name to its rank
+		/* start with all nodes sleeping, then add the code for each
+		 * activation. Large programs are sparse, storing only the
+		 * instructions that aren't sleep.
 		 */
-		for (int i = 0; i < numNodes; i++) {
-			nodeIndexMap.put(nodeNames[i], i);
-		}
+		program = ProgramSchedule.create(endScheduleTime,numNodes);
+		program.extendTo(endScheduleTime);
 		
+		if (parallelCodeGeneration && numChannels > 1 
+				&& numChannels*endScheduleTime >= MIN_PARALLEL_SLOTS) {
+			/* translate the channels concurrently, each with its
+			 * own fragment cache, then add their code in channel order
+			 */
+			var channelCode = IntStream.range(0, numChannels).parallel()
+					.mapToObj(channel -> new ChannelCode(channel, 
+							new CodeFragment.Cache(poset.getErr())))
+					.collect(Collectors.toList());
+			for (ChannelCode code: channelCode) {
+				code.addTo(program);
+			}
+		} else {
+			var codeFragments = new CodeFragment.Cache(poset.getErr());
+			for (int channel = 0; channel < numChannels; channel++) {
+				new ChannelCode(channel, codeFragments).addTo(program);
+			}
+		}
+		changedTimes.clear();
+		return program;
+	}
+
+	/**
+	 * updateProgram brings program, which toProgram() or updateProgram()
+	 * last returned for this schedule, up to date with the entries that
+	 * changed since, e.g., by addFlow() or removeFlow(). Only the time
+	 * slots in which entries changed are generated again, so that the
+	 * program is the one toProgram() would return. If every time slot 
+	 * changed, or the schedule is not schedulable, the program is 
+	 * generated by toProgram() instead.
+	 * 
+	 * @param program the program last generated for this schedule
+	 * @return the updated program
+	 */
+	public ProgramSchedule updateProgram(ProgramSchedule program) {
+		if (!schedulable || changedTimes.cardinality() == endScheduleTime) {
+			return toProgram();
+		}
+		/* trimming entries below changes more times, which have no code */
+		var times = (BitSet) changedTimes.clone();
+		var numNodes = program.getNumColumns();
+		var sleep = Instruction.sleep();
+		for (int time = times.nextSetBit(0); time >= 0; time = times.nextSetBit(time+1)) {
+			for (int node = 0; node < numNodes; node++) {
+				program.set(time, node, sleep);
+			}
+		}
+		var codeFragments = new CodeFragment.Cache(poset.getErr());
 		for (int channel = 0; channel < numChannels; channel++) {
-			for (int time = 0; time < endScheduleTime; time++) {
+			var wait = Instruction.wait(channel);
+			for (int time = times.nextSetBit(0); time >= 0; time = times.nextSetBit(time+1)) {
 				var entry = schedule.get(channel,time);
+				/* as in toProgram(), an entry only has code from its start time */
+				if (entry != null && schedule.get(channel,entry.getStartTime()) == entry) {
+					var codeFragment = codeFragments.get(entry.getDelta(),entry.getEdges(),
+							entry.getCoordinators(),channel);
+					var startTime = entry.getStartTime();
+					var endTime = entry.getEndTime();
+					var duration = Math.min(endTime - startTime + 1, codeFragment.size());
+					var actions = codeFragment.actions();
+					for (int i = 0; i < actions.size() && i < duration; i++) {
+						var row = startTime+i;
+						if (times.get(row)) {
+							var action = actions.get(i);
+							program.set(row, action.getCoordinatorColumn(), action.getInstruction());
+							for (int column: action.getListenerColumns()) {
+								program.set(row, column, wait);
+							}
+						}
+					}
+					if (duration < endTime - startTime + 1) {
+						/* trim the entry, as toProgram() does */
+						var newEndTime = startTime + duration - 1;
+						for (int t = endTime; t > newEndTime; t--) {
+							setEntry(channel,t,null);
+						}
+						entry.setEndTime(newEndTime);
+					}
+					time = Math.max(time, endTime);
+				}
+			}
+		}
+		changedTimes.clear();
+		return program;
+	}
+	
+	/**
+	 * ChannelCode is the code generated for the entries on one
+	 * channel of the schedule. Generating it only reads the schedule, 
+	 * so the channels can be translated concurrently. Every change 
+	 * it makes, to the program and to the schedule entries whose 
+	 * code is shorter than planned, is made by addTo().
+	 */
+	private final class ChannelCode {
+		private final int channel;
+		/* the fragment, start time and duration of each activation */
+		private final ArrayList<CodeFragment> fragments = new ArrayList<CodeFragment>();
+		private final ArrayList<int[]> fragmentTimes = new ArrayList<int[]>();
+		/* the entries to shorten and their new end times */
+		private final ArrayList<Activation> trimmed = new ArrayList<Activation>();
+		private final ArrayList<Integer> trimmedEndTimes = new ArrayList<Integer>();
+		private final StringBuilder errors = new StringBuilder();
+
+		private ChannelCode(int channel, CodeFragment.Cache codeFragments) {
+			this.channel = channel;
+			CodeFragment codeFragment = null;
+			var sleepFragment = new CodeFragment();
+			var cleared = new BitSet(); // slots of trimmed entries
+			var duration = 0; // default duration for SLEEP;
+			String name = null;
+			var startTime = 0;
+			var endTime = 0;
+			
+			for (int time = 0; time < endScheduleTime; time++) {
+				var entry = cleared.get(time) ? null : schedule.get(channel,time);
 				if (entry == null) {
 					/* no entry here, so instruction will be SLEEP instruction */
-					codeFragment = new CodeFragment();
+					codeFragment = sleepFragment;
 					startTime = time;
 					endTime = time;
 					name = "Empty";
 				} else {
 					/* create the codeFragment for this activation entry */
-					codeFragment = new CodeFragment(entry.getDelta(),entry.getEdges(),
+					codeFragment = codeFragments.get(entry.getDelta(),entry.getEdges(),
 							entry.getCoordinators(),channel);
 					startTime = entry.getStartTime();
 					endTime = entry.getEndTime();
@@ -157,15 +428,14 @@ public abstract class Schedule {
 					if (duration > codeFragment.size()) {
 						/* for combination fragments, we can sometimes generate
 						 * more efficient code than originally thought. So,
-						 * update schedule by replacing the entry with null
-						 * and update the activation with the the new end time.
+						 * addTo() replaces the rest of the entry with null
+						 * and updates the activation with the the new end time.
 						 */
-						for (int k = 0; k < (duration - codeFragment.size()); k++) {
-							schedule.set(channel,endTime-k,null);
-						}
-						endTime = codeFragment.size() + startTime - 1;
-						entry.setEndTime(endTime);
-						
+						var newEndTime = codeFragment.size() + startTime - 1;
+						cleared.set(newEndTime+1, endTime+1);
+						trimmed.add(entry);
+						trimmedEndTimes.add(newEndTime);
+						endTime = newEndTime;
 					}
 				}
 				duration =  endTime - startTime + 1;
@@ -175,72 +445,55 @@ public abstract class Schedule {
 				 * > size, else we may overwrite something. Just report for now.
 				 */
 				if (duration > codeFragment.size()) {
-					System.err.printf("activation %s: duration = %d, codeSize = %d", 
-							name,duration, codeFragment.size());
+					errors.append(String.format("activation %s: duration = %d, codeSize = %d", 
+							name,duration, codeFragment.size()));
 				} else if (time != startTime ){
-					System.err.printf("activation %s: time = %d, startTime = %d", 
-							name, time, startTime);
+					errors.append(String.format("activation %s: time = %d, startTime = %d", 
+							name, time, startTime));
 
 				} else {
-					var instructions = codeFragment.instructions();
-					var coordinator = codeFragment.getCoordinator();
-
-					if (coordinator != null) {
-						/* coordinator is null the entry is sleep,
-						 * which happens when the schedule entry was null.
-						 * We skip this entry and then replace nulls in the
-						 * program with sleep instructions at the end
-						 */
-						for (int i = 0; i < duration; i++) {
-							var instr = instructions.get(i);
-							/* enter the instruciton in the program */
-							var row = time+i;
-							var column = nodeIndexMap.get(coordinator);		
-							program.set(row,column,instr);
-
-							/* get the listeners from the instruction 
-							 * and insert the wait() instructions into
-							 * the program for each listener
-							 * */
-							var dsl = new WarpDSL();
-							var instructionParametersArray = dsl.getInstructionParameters(instr); 
-							for (InstructionParameters fragment: instructionParametersArray) {
-								String listener = fragment.getListener();
-								if(!listener.equals(UNKNOWN)) {
-									/* need to add a wait instruction for node listener
-									 * wait(#channel)
-									 * at time,listener location of program table
-									 */
-									program.set(time+i,nodeIndexMap.get(listener),codeFragment.wait(channel));
-								}
-							}
-						}
+					/* a sleep fragment has no actions, because the
+					 * program already has sleep instructions there.
+					 */
+					if (codeFragment != sleepFragment) {
+						fragments.add(codeFragment);
+						fragmentTimes.add(new int[] {time, duration});
 					}
 					time += duration-1;
 				}
-
 			}
 		}
-		replaceNullWithSleep(program);
-		return program;
-	}
-	
-	/**
-	 * Replace all null entries in program with sleep instructions
-	 * 
-	 * @param program
-	 */
-	private void replaceNullWithSleep(ProgramSchedule program) {
-		var rows = program.getNumRows();
-		var columns = program.getNumColumns();
 
-		for (int i = 0; i < rows; i++) {
-			for (int j = 0; j < columns; j++) {
-				var entry = program.get(i,j);
-				if (entry == null) {
-					program.set(i, j, CodeFragment.sleep());
+		/*
+		 * Fills in the coordinator's instruction and the listeners' 
+		 * wait() for each time slot of each activation, and shortens
+		 * the entries whose code is shorter than planned.
+		 */
+		private void addTo(ProgramSchedule program) {
+			/* the instruction of every listener on this channel */
+			var wait = Instruction.wait(channel);
+			for (int f = 0; f < fragments.size(); f++) {
+				var actions = fragments.get(f).actions();
+				var time = fragmentTimes.get(f)[0];
+				var duration = fragmentTimes.get(f)[1];
+				for (int i = 0; i < actions.size() && i < duration; i++) {
+					var action = actions.get(i);
+					var row = time+i;
+					program.set(row, action.getCoordinatorColumn(), action.getInstruction());
+					for (int column: action.getListenerColumns()) {
+						program.set(row, column, wait);
+					}
 				}
 			}
+			for (int t = 0; t < trimmed.size(); t++) {
+				var entry = trimmed.get(t);
+				var endTime = trimmedEndTimes.get(t);
+				for (int time = entry.getEndTime(); time > endTime; time--) {
+					setEntry(channel,time,null);
+				}
+				entry.setEndTime(endTime);
+			}
+			poset.getErr().print(errors);
 		}
 	}
 	
@@ -256,7 +509,7 @@ public abstract class Schedule {
 		var duration = next.getExecutionDuration();
 		fakeTime = startTime + duration - 1;
 		if (fakeTime >= endScheduleTime) {
-			System.err.print("NOT SCHEDULABLE: CAN'T STORE ANY MORE FAKE ENTRIES");
+			poset.getErr().print("NOT SCHEDULABLE: CAN'T STORE ANY MORE FAKE ENTRIES");
 			print();
 		}
 		next.setEndTime(next.getReleaseTime()+next.getDeadline()-next.getPhase());
@@ -274,7 +527,7 @@ public abstract class Schedule {
 			/* Add this object to the schedule for the
 			 * from startTime to endTime.
 			 */
-			schedule.set(channel, i, entry);
+			setEntry(channel, i, entry);
 		}
 		fakeTime++;
 	}
@@ -324,17 +577,47 @@ public abstract class Schedule {
 		return channel;
 	}
 
+	/**
+	 * findChannelAndTime searches for the first time at or after time
+	 * at which schedulableObject can be scheduled on some channel. 
+	 * When no channel is available at a time, continueSearch()
+	 * either gives the next time to try (see retryAt()) or ends the 
+	 * search, so the search is a loop rather than one recursive call
+	 * per time tried.
+	 * 
+	 * @param time
+	 * @param schedulableObject
+	 * @return ScheduleLocation with channel numChannels if none is found
+	 */
 	protected ScheduleLocation findChannelAndTime(Integer time, Activation schedulableObject ) {
-		var channel = numChannels; // default is no channel available 
 		var duration = schedulableObject.getExecutionDuration();
+		ScheduleLocation location = null;
 		
-		while (time < endScheduleTime && conflictsExist(schedulableObject, time, duration )) {
-			time ++; //+= duration+1;
+		while (location == null) {
+			time = nextConflictFreeTime(schedulableObject, time, duration);
+			if (time >= endScheduleTime) {
+				/* no conflict time available */
+				location = new ScheduleLocation(numChannels, time);
+			} else {
+				location = findChannel(time, schedulableObject);
+				if (location.isRetry()) {
+					/* continue the search at the time returned */
+					time = location.getTime();
+					location = null;
+				}
+			}
 		}
-		if (time >= endScheduleTime) {
-			/* no conflict time available */
-			return new ScheduleLocation(channel, time);	
-		} 
+		return location;
+	}
+	
+	/* 
+	 * findChannel finds a channel at time, which is free of conflicts 
+	 * for schedulableObject. If there is no such channel, it returns
+	 * continueSearch(time, schedulableObject).
+	 */
+	private ScheduleLocation findChannel(Integer time, Activation schedulableObject) {
+		var channel = numChannels; // default is no channel available 
+		var duration = schedulableObject.getExecutionDuration();
 		
 		/* can schedule at current value of time, so find the best channel.
 		 * Bias toward and empty channel at near lowest end of spectrum */
@@ -380,20 +663,52 @@ public abstract class Schedule {
 	}
 	
 	/** continueSearch continues the search for a channel time.<br>
-	 * The default implementation continues at time+1 by calling
-	 * findChannelAndTime(time+1,schedulableObject). This method
-	 * can be overridden to provide preemptive searches or any
-	 * other method of continuing the search.
+	 * It returns the channel and time found, retryAt() the time at 
+	 * which findChannelAndTime() continues the search, or channel 
+	 * numChannels to end the search without a channel and time. 
+	 * The default implementation skips ahead to the first 
+	 * time at which some channel might be available (see 
+	 * nextSearchTime()). This method can be overridden to provide 
+	 * preemptive searches or any other method of continuing the search.
 	 * 
 	 * @param time
 	 * @param activation
 	 * @return ScheduleLocation
 	 */
 	protected ScheduleLocation continueSearch(Integer time, Activation activation) {
-		return findChannelAndTime(time+1,activation);
+		return retryAt(nextSearchTime(time, activation));
+	}
+	
+	/**
+	 * nextSearchTime returns the next time after time at which
+	 * findChannelAndTime() could find a channel for obj, given that
+	 * it found none at time. On each channel, the first entry in 
+	 * [time, time+duration-1] that cannot be combined with obj 
+	 * blocks the channel until that entry's slot has passed, since
+	 * every slot before it is empty. A channel with no such entry
+	 * can be tried again at time+1.
+	 */
+	protected Integer nextSearchTime(Integer time, Activation obj) {
+		var duration = obj.getExecutionDuration();
+		var nextTime = endScheduleTime;
+		
+		for (int channel = 0; channel < numChannels && nextTime > time+1; channel++) {
+			var channelTime = time+1;
+			for (int j = time; j < time+duration; j++) {
+				var entry = schedule.get(channel,j);
+				if (entry != null) {
+					if (!entry.canCombine(obj)) {
+						channelTime = j+1;
+					}
+					break;
+				}
+			}
+			nextTime = Math.min(nextTime, channelTime);
+		}
+		return Math.max(nextTime, time+1);
 	}
 	
-	protected Boolean noOtherChannelConflicts(Integer exceptedChannel, Activation schedulableObject, Integer time) {
+	protected Boolean noOtherChannelConflicts(int exceptedChannel, Activation schedulableObject, int time) {
 		var result = true;
 
 		if (time >= endScheduleTime) {
@@ -402,7 +717,7 @@ public abstract class Schedule {
 			 */
 			return false;
 		}
-		for (Integer channel = 0; channel < numChannels ; channel++) {
+		for (int channel = 0; channel < numChannels ; channel++) {
 			var entry = schedule.get(channel,time);
 
 			if (entry != null && schedulableObject != null && channel != exceptedChannel) {
@@ -415,7 +730,7 @@ public abstract class Schedule {
 		return result;
 	}
 	
-	protected Boolean conflictsExist(Activation obj, Integer time, Integer duration) {
+	protected Boolean conflictsExist(Activation obj, int time, int duration) {
 		var result = false;
 
 		if (time+duration >= endScheduleTime) {
@@ -426,23 +741,104 @@ public abstract class Schedule {
 		}
 		if (duration <= 0) {
 			result  = true;
-		} else {
-			for (Integer i = time; i < time+duration; i++ ) {
-				for (Integer channel = 0; channel < numChannels ; channel++) {
-					var entry = schedule.get(channel,i);
-					if (entry != null && obj != null) {
-						if (entry.conflictExists(obj)) {
-							result = true;
-							return result;
-						}
-					} 
-				}
-			}	
+		} else if (obj != null) {
+			result = firstConflictTime(obj, time, duration) < time+duration;
 		}
 		return result;
 	}
+
+	/**
+	 * nextConflictFreeTime returns the first time at or after time at
+	 * which conflictsExist(obj, time, duration) is false, or
+	 * endScheduleTime if there is none. Instead of trying each time,
+	 * the search jumps past the first conflict in the interval, but
+	 * not past the last time obj fits in the schedule, where
+	 * conflictsExist() is false.
+	 */
+	protected int nextConflictFreeTime(Activation obj, int time, int duration) {
+		while (time < endScheduleTime && conflictsExist(obj, time, duration)) {
+			if (duration <= 0) {
+				time++;
+			} else {
+				time = Math.min(firstConflictTime(obj, time, duration) + 1,
+						endScheduleTime - duration);
+			}
+		}
+		return time;
+	}
+
+	/*
+	 * Returns the first time at or after time at which an entry
+	 * conflicts with obj, or Integer.MAX_VALUE if there is none.
+	 */
+	private int firstConflictTime(Activation obj, int time, int duration) {
+		var first = Integer.MAX_VALUE;
+		var conflictIds = obj.getConflictIds();
+		for (int node = conflictIds.nextSetBit(0); node >= 0 && node < numNodes;
+				node = conflictIds.nextSetBit(node+1)) {
+			first = Math.min(first, nextBusyTime(node, time, first));
+		}
+		return first;
+	}
+
+	/*
+	 * Returns the first time at or after time, and before limit, at 
+	 * which node is busy, or Integer.MAX_VALUE if there is none.
+	 */
+	private int nextBusyTime(int node, int time, int limit) {
+		var row = node*busyWordsPerNode;
+		var word = time / Long.SIZE;
+		var lastWord = (Math.min(limit, endScheduleTime) - 1) / Long.SIZE;
+		if (word > lastWord) {
+			return Integer.MAX_VALUE;
+		}
+		var bits = nodeBusyTimes[row+word] & (-1L << time);
+		while (bits == 0) {
+			if (++word > lastWord) {
+				return Integer.MAX_VALUE;
+			}
+			bits = nodeBusyTimes[row+word];
+		}
+		return word*Long.SIZE + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * setEntry stores entry in the schedule at channel and time and
+	 * updates the index of the time each node is busy.
+	 */
+	protected void setEntry(Integer channel, Integer time, Activation entry) {
+		var previous = schedule.get(channel, time);
+		schedule.set(channel, time, entry);
+		if (channel < numChannels) {
+			changedTimes.set(time);
+			/* recompute the nodes that are busy at time */
+			scratchConflictIds.clear();
+			for (int i = 0; i < numChannels; i++) {
+				var current = schedule.get(i, time);
+				if (current != null) {
+					scratchConflictIds.or(current.getConflictIds());
+				}
+			}
+			var word = time / Long.SIZE;
+			var bit = 1L << time;
+			/* only the nodes of the entry replaced can stop being busy */
+			if (previous != null) {
+				var conflictIds = previous.getConflictIds();
+				for (int node = conflictIds.nextSetBit(0); node >= 0; 
+						node = conflictIds.nextSetBit(node+1)) {
+					if (!scratchConflictIds.get(node)) {
+						nodeBusyTimes[node*busyWordsPerNode + word] &= ~bit;
+					}
+				}
+			}
+			for (int node = scratchConflictIds.nextSetBit(0); node >= 0; 
+					node = scratchConflictIds.nextSetBit(node+1)) {
+				nodeBusyTimes[node*busyWordsPerNode + word] |= bit;
+			}
+		}
+	}
 	
-	protected Boolean freeOfCoordinatorConflicts(Activation obj, Integer requestedChannel, Integer time, Integer duration) {
+	protected Boolean freeOfCoordinatorConflicts(Activation obj, int requestedChannel, int time, int duration) {
 		var result = true;
 
 		if (time+(duration-1) >= endScheduleTime) {
@@ -454,8 +850,8 @@ public abstract class Schedule {
 		if (duration <= 0) {
 			result  = false;
 		} else {
-			for (Integer i = time; i < time+duration; i++ ) {
-				for (Integer channel = 0; channel < numChannels ; channel++) {
+			for (int i = time; i < time+duration; i++ ) {
+				for (int channel = 0; channel < numChannels ; channel++) {
 					var entry = schedule.get(channel,time);
 					if (entry != null && obj != null) {
 						if (entry.canCombine(obj) && channel != requestedChannel) {
@@ -471,15 +867,17 @@ public abstract class Schedule {
 
 	/**
 	 * isAvailable returns true if the schedule for the channel is available in the 
-	 * interval [start, start+duration-1]
+	 * interval [start, start+duration-1]. When a1 can be combined with an entry, 
+	 * the combination is checked with a reusable probe (see combinationProbe()), 
+	 * so the check doesn't allocate.
 	 */
-	protected Boolean isAvailable(Activation a1, Integer channel, Integer start, Integer duration) {
+	protected Boolean isAvailable(Activation a1, int channel, int start, int duration) {
 		var available = true;
 		
 		if (conflictsExist(a1,start,duration)) {
 			return false;
 		}
-		for (Integer j = start; j < start+duration; j++ ) {
+		for (int j = start; j < start+duration; j++ ) {
 			var currentEntry = schedule.get(channel,j);
 			if (currentEntry != null) {
 				if (currentEntry.canCombine(a1)) {
@@ -488,7 +886,7 @@ public abstract class Schedule {
 					 *  to see if we can combine activations
 					 */
 					var combinedDuration = currentEntry.getCombinedExecutionDuration(a1);
-					var combinedEntry = new CombinedActivation(currentEntry,a1);
+					var combinedEntry = combinationProbe(currentEntry,a1);
 					var searchTime = currentEntry.getEndTime()+1;
 					var searchLength = combinedDuration - (duration-(j-start));
 					return isAvailable(combinedEntry, channel, searchTime, searchLength);
@@ -504,14 +902,33 @@ public abstract class Schedule {
 		return available;
 	}
 	
+	/**
+	 * combinationProbe returns a probe that stands in for the combination
+	 * of entry and next while checking if it is available. The probe is 
+	 * reused by the next check of a combination at the same level of
+	 * nesting, so it must not be kept or added to the schedule.
+	 *
+	 * @param entry the entry in the schedule
+	 * @param next the activation combined with entry, which may be a probe
+	 * @return the combination of entry and next
+	 */
+	protected Activation combinationProbe(Activation entry, Activation next) {
+		var depth = (next instanceof CombinationProbe) ? 
+				((CombinationProbe) next).getDepth() + 1 : 0;
+		while (probes.size() <= depth) {
+			probes.add(new CombinationProbe(probes.size()));
+		}
+		return probes.get(depth).combine(entry, next);
+	}
+	
 	/**
 	 * isAvailable returns true if the schedule is available in the 
 	 * interval [start, start+duration-1] in any channel
 	 */
-	protected Boolean isAvailable(Activation a1, Integer start, Integer duration) {
+	protected Boolean isAvailable(Activation a1, int start, int duration) {
 		var available = false;
 		
-		for (Integer channel = 0; channel < numChannels; channel++) {
+		for (int channel = 0; channel < numChannels; channel++) {
 			if (isAvailable(a1,channel,start,duration)) {
 			available = true;
 			break;
@@ -527,9 +944,8 @@ public abstract class Schedule {
 	protected Integer timeRemaining(Integer channel, Integer start, Integer duration) {
 		var result = duration;
 
-		var row = schedule.get(channel);
-		for (Integer i = start; i < start+duration; i++, result-- ) {
-			if (row.get(i) != null) {
+		for (int i = start; i < start+duration; i++, result-- ) {
+			if (!schedule.isEmpty(channel,i)) {
 				break;
 			}
 		}
@@ -566,7 +982,7 @@ public abstract class Schedule {
 				/* Add this object to the schedule for the
 				 * from startTime to endTime.
 				 */
-				schedule.set(channel, i, entry);
+				setEntry(channel, i, entry);
 			}
 			result = true;
 		}
@@ -663,20 +1079,21 @@ public abstract class Schedule {
 			/* Add this object to the schedule for the
 			 * from startTime to endTime.
 			 */
-			schedule.set(channel, i, entry);
+			setEntry(channel, i, entry);
 		}
 		return true;
 	}
 
 	private void reportNotSchedulable(Activation object) {
-		object.print("This entry is not Schedulable:");
+		object.print(poset.getOut(), "This entry is not Schedulable:");
 	}
 
 	public void printVerbose() {
-		System.out.println("\nSchedule:");
-		var endSchedule = schedule.get(0).size();
+		var out = poset.getOut();
+		out.println("\nSchedule:");
+		var endSchedule = schedule.getNumColumns();
 		for (int i = 0; i < numChannels; i++) {
-			System.out.printf("\nChannel: %d",i);
+			out.printf("\nChannel: %d",i);
 			var name = UNKNOWN;
 			for (int j = 0; j < endSchedule; j++) {
 				var entry = schedule.get(i,j);
@@ -684,7 +1101,7 @@ public abstract class Schedule {
 					var entryName = entry.getName();
 					if (!name.equals(entryName)) {
 						name = entryName;
-						entry.print("Time " + j +":");
+						entry.print(out, "Time " + j +":");
 					}
 				}
 			}
@@ -692,9 +1109,10 @@ public abstract class Schedule {
 	}
 
 	public void print() {
-		System.out.printf("\nSchedule (length is %d):\n", endScheduleTime);
-		for (int i = 0; i < schedule.size(); i++) {
-			System.out.printf("\nChannel: %d: ",i);
+		var out = poset.getOut();
+		out.printf("\nSchedule (length is %d):\n", endScheduleTime);
+		for (int i = 0; i < schedule.getNumRows(); i++) {
+			out.printf("\nChannel: %d: ",i);
 			var name = UNKNOWN;
 			var startTime = -1;
 			for (int j = 0; j < endScheduleTime; j++) {
@@ -705,19 +1123,18 @@ public abstract class Schedule {
 						/* only print out unique entries (not duplicates in the interval */
 						name = entryName;
 						startTime = entry.getStartTime();
-						System.out.printf("%s[%d,%d] ", 
+						out.printf("%s[%d,%d] ", 
 								name, entry.getStartTime(),entry.getEndTime());
 					} 
 				}
 			}
 		}
 		/* report the number of Activations not schedulable, if any */
-		ArrayList<Activation> notSchedulable = schedule.get(numChannels);
 		var numNotSchedulable = 0; 	
 		var name = UNKNOWN;
 		var lastStartTime = -1;
 		for (int i = 0; i < endScheduleTime; i++) {
-			var entry = notSchedulable.get(i);
+			var entry = schedule.get(numChannels,i);
 			if (entry != null) {
 				var entryName = entry.getName();
 				if (!name.equals(entryName) || (name.equals(entryName) && lastStartTime != entry.getStartTime())) {
@@ -728,9 +1145,9 @@ public abstract class Schedule {
 			}
 		}
 		if (numNotSchedulable > 0 ) {
-			System.out.printf("\n%d Activations were not schedulable\n", numNotSchedulable);
+			out.printf("\n%d Activations were not schedulable\n", numNotSchedulable);
 		}
-		System.out.println();
+		out.println();
 	}
 	
 }
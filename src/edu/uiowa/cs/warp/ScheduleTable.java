@@ -1,26 +1,108 @@
 package edu.uiowa.cs.warp;
 
-public class ScheduleTable extends Table<Activation,Row<Activation>> {
-	
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = 1L;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * ScheduleTable is the table of activations built by a poset Schedule,
+ * with a row for each channel and a column for each time slot. An
+ * activation fills every slot from its start to end time, so rather
+ * than a reference per slot, the table is a flat, channel-major int
+ * array of indices into a side array of the distinct activations
+ * stored. Index 0 is an empty (null) slot.
+ *
+ * @author sgoddard
+ *
+ */
+public class ScheduleTable {
+
+	private static final int EMPTY = 0;
+
+	private final int numRows;
+	private final int numColumns;
+	private final int[] slots; // slots[row*numColumns + column]
+	private final ArrayList<Activation> entries; // entries.get(index-1)
+	private final IdentityHashMap<Activation,Integer> entryIndices;
+	/* activations are stored in runs of slots, so cache the last one */
+	private Activation lastEntry = null;
+	private int lastIndex = EMPTY;
 
 	ScheduleTable(){
-		super();
+		this(0,0);
 	}
-	
+
 	/**
 	 * Constructor creates a table row x column in size, full
 	 * of null values.
-	 * 
+	 *
 	 * @param row
 	 * @param column
 	 */
 	ScheduleTable(Integer row, Integer column){
-		super(row,column);
-		
+		this.numRows = row;
+		this.numColumns = column;
+		this.slots = new int[row*column];
+		this.entries = new ArrayList<Activation>();
+		this.entryIndices = new IdentityHashMap<Activation,Integer>();
+	}
+
+	public Integer getNumRows() {
+		return numRows;
+	}
+
+	public Integer getNumColumns() {
+		return numColumns;
+	}
+
+	/**
+	 * Sets the slot at row and column to element. Slots outside the
+	 * table are ignored.
+	 */
+	public void set(int row, int column, Activation element) {
+		if (row < numRows && column < numColumns) {
+			slots[row*numColumns + column] = indexOf(element);
+		}
+	}
+
+	/**
+	 * @return the activation in the slot at row and column, or null
+	 * if the slot is empty or outside the table
+	 */
+	public Activation get(int row, int column) {
+		Activation element = null;
+		if (row < numRows && column < numColumns) {
+			var index = slots[row*numColumns + column];
+			if (index != EMPTY) {
+				element = entries.get(index-1);
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * @return true if the slot at row and column is empty or outside
+	 * the table
+	 */
+	public Boolean isEmpty(int row, int column) {
+		return row >= numRows || column >= numColumns
+				|| slots[row*numColumns + column] == EMPTY;
+	}
+
+	private int indexOf(Activation element) {
+		if (element == null) {
+			return EMPTY;
+		}
+		if (element != lastEntry) {
+			var index = entryIndices.get(element);
+			if (index == null) {
+				entries.add(element);
+				index = entries.size();
+				entryIndices.put(element, index);
+			}
+			lastEntry = element;
+			lastIndex = index;
+		}
+		return lastIndex;
 	}
 
 }
@@ -0,0 +1,208 @@
+package edu.uiowa.cs.warp;
+
+import java.util.Arrays;
+
+/**
+ * SparseProgramSchedule is a ProgramSchedule that stores only the
+ * non-sleep instructions of each node. Sleep is implicit: any cell
+ * without an instruction is a sleep instruction, and writing sleep
+ * (or null) to a cell clears it. For each node (column), the time
+ * slots (rows) with instructions are kept in a sorted array, with
+ * the instructions in a parallel array, so a cell is found with a
+ * binary search. Memory is proportional to the number of instructions
+ * rather than time slots x nodes.
+ *
+ * Cell access with get(row, column) and set(row, column, instruction)
+ * is the intended interface. The schedule is also a full List of
+ * time slots: get(row) builds the row from the columns, so changes
+ * to it must be written back with set(row, timeSlot), and time slots
+ * can be added, inserted and removed anywhere.
+ *
+ * @author agent
+ *
+ */
+public class SparseProgramSchedule extends VirtualProgramSchedule {
+
+	private static final long serialVersionUID = 1L;
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final int numColumns;
+	private int numRows;
+	private int[][] rows; // sorted rows with an instruction, for each column
+	private Instruction[][] instructions; // instruction in each of those rows
+	private int[] counts; // number of instructions in each column
+
+	SparseProgramSchedule(Integer numColumns) {
+		super();
+		this.numColumns = numColumns;
+		clear();
+	}
+
+	@Override
+	public void clear() {
+		numRows = 0;
+		rows = new int[numColumns][INITIAL_CAPACITY];
+		instructions = new Instruction[numColumns][INITIAL_CAPACITY];
+		counts = new int[numColumns];
+	}
+
+	@Override
+	public int size() {
+		return numRows;
+	}
+
+	@Override
+	public Integer getNumColumns() {
+		return (numRows > 0) ? numColumns : 0;
+	}
+
+	@Override
+	public Boolean isSparse() {
+		return true;
+	}
+
+	@Override
+	public void extendTo(Integer numRows) {
+		/* new time slots are all sleep, which is implicit */
+		this.numRows = Math.max(this.numRows, numRows);
+	}
+
+	@Override
+	public Instruction get(Integer row, Integer column) {
+		Instruction element = null;
+		if (row < numRows && column < numColumns) {
+			var i = find(column, row);
+			element = (i >= 0) ? instructions[column][i] : Instruction.sleep();
+		}
+		return element;
+	}
+
+	@Override
+	public void set(Integer row, Integer column, Instruction element) {
+		if (row < numRows && column < numColumns) {
+			var i = find(column, row);
+			if (element == null || element.isSleep()) {
+				if (i >= 0) {
+					remove(column, i);
+				}
+			} else if (i >= 0) {
+				instructions[column][i] = element;
+			} else {
+				insert(column, -(i + 1), row, element);
+			}
+		}
+	}
+
+	@Override
+	public InstructionTimeSlot get(int row) {
+		if (row < 0 || row >= numRows) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Index %d out of bounds for length %d", row, numRows));
+		}
+		var timeSlot = new InstructionTimeSlot(numColumns, Instruction.sleep());
+		for (int column = 0; column < numColumns; column++) {
+			var i = find(column, row);
+			if (i >= 0) {
+				timeSlot.set(column, instructions[column][i]);
+			}
+		}
+		return timeSlot;
+	}
+
+	@Override
+	public InstructionTimeSlot set(int row, InstructionTimeSlot timeSlot) {
+		var previous = get(row);
+		for (int column = 0; column < numColumns; column++) {
+			var element = (column < timeSlot.size()) ? timeSlot.get(column) : null;
+			set(row, column, element);
+		}
+		return previous;
+	}
+
+	@Override
+	public void add(int row, InstructionTimeSlot timeSlot) {
+		if (row < 0 || row > numRows) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Index %d out of bounds for length %d", row, numRows));
+		}
+		for (int column = 0; column < numColumns; column++) {
+			shiftRows(column, row, 1); // make room for the new time slot
+		}
+		numRows++;
+		set(row, timeSlot);
+	}
+
+	@Override
+	public InstructionTimeSlot remove(int row) {
+		var previous = get(row);
+		for (int column = 0; column < numColumns; column++) {
+			var i = find(column, row);
+			if (i >= 0) {
+				remove(column, i);
+			}
+			shiftRows(column, row, -1);
+		}
+		numRows--;
+		return previous;
+	}
+
+	@Override
+	public SparseProgramSchedule clone() {
+		var copy = (SparseProgramSchedule) super.clone();
+		copy.rows = new int[numColumns][];
+		copy.instructions = new Instruction[numColumns][];
+		for (int column = 0; column < numColumns; column++) {
+			copy.rows[column] = rows[column].clone();
+			copy.instructions[column] = instructions[column].clone();
+		}
+		copy.counts = counts.clone();
+		return copy;
+	}
+
+	/**
+	 * @param column the node
+	 * @return the number of non-sleep instructions for the node
+	 */
+	public Integer getNumInstructions(Integer column) {
+		return counts[column];
+	}
+
+	/*
+	 * Returns the position of row in the column's arrays, or
+	 * -(insertion point) - 1 if the column sleeps in that row.
+	 */
+	private int find(int column, int row) {
+		return Arrays.binarySearch(rows[column], 0, counts[column], row);
+	}
+
+	private void insert(int column, int i, int row, Instruction element) {
+		var count = counts[column];
+		if (count == rows[column].length) {
+			rows[column] = Arrays.copyOf(rows[column], count * 2);
+			instructions[column] = Arrays.copyOf(instructions[column], count * 2);
+		}
+		System.arraycopy(rows[column], i, rows[column], i + 1, count - i);
+		System.arraycopy(instructions[column], i, instructions[column], i + 1, count - i);
+		rows[column][i] = row;
+		instructions[column][i] = element;
+		counts[column]++;
+	}
+
+	/*
+	 * Adds delta to the rows from row on that have an instruction
+	 * in the column.
+	 */
+	private void shiftRows(int column, int row, int delta) {
+		var i = find(column, row);
+		for (int j = (i >= 0) ? i : -(i + 1); j < counts[column]; j++) {
+			rows[column][j] += delta;
+		}
+	}
+
+	private void remove(int column, int i) {
+		var count = --counts[column];
+		System.arraycopy(rows[column], i + 1, rows[column], i, count - i);
+		System.arraycopy(instructions[column], i + 1, instructions[column], i, count - i);
+		instructions[column][count] = null;
+	}
+}
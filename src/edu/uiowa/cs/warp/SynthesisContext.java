@@ -0,0 +1,146 @@
+package edu.uiowa.cs.warp;
+
+import edu.uiowa.cs.utilities.Utilities;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SynthesisContext holds the parts of a workload analysis that don't depend on the order in which
+ * flows are scheduled: node names and schedule columns, the hyperperiod, maximum phase and flow
+ * length, the Tx attempts needed on each link, and the TopologyAnalysis of the flows. Every
+ * scheduler choice needs them, so a WorkLoad builds its context once (see
+ * WorkLoad.getSynthesisContext()) and each Program and Poset built for it reads them from there.
+ * Only the flow priorities, edges and activations, which depend on the scheduler, are built for
+ * each schedule.
+ *
+ * <p>
+ * A context is immutable. When the flows of a workload change, the workload builds a new one.
+ *
+ * @author agent
+ */
+public final class SynthesisContext {
+
+  private final String[] nodeNamesOrderedAlphabetically;
+  private final Map<String, Integer> nodeIndices; // node name to schedule column (id)
+  private final int hyperPeriod;
+  private final int maxPhase;
+  private final int maxFlowLength;
+  private final Map<String, Integer[]> numTxAttemptsPerLink; // by flow name
+  private final TopologyAnalysis topology;
+
+  /**
+   * Analyzes the nodes and flows of workLoad, which must have its node ids assigned.
+   *
+   * @param workLoad the workload to analyze
+   */
+  SynthesisContext(WorkLoad workLoad) {
+    nodeNamesOrderedAlphabetically = workLoad.getNodeNamesOrderedAlphabetically();
+    nodeIndices = Collections.unmodifiableMap(new HashMap<>(workLoad.getNodeIds()));
+    var period = 1; // hyperPeriod is LCM of all periods. Initialize to 1
+    var flowLength = 0;
+    var numTx = new HashMap<String, Integer[]>();
+    for (Flow flow : workLoad.getFlows().values()) {
+      period = Utilities.lcm(period, flow.getPeriod());
+      flowLength = Math.max(flowLength, flow.getNodes().size());
+      /* the last entry of linkTxAndTotalCost is the total cost, not a link */
+      var linkTxAndTotalCost = flow.getLinkTxAndTotalCost();
+      var numLinks = Math.max(linkTxAndTotalCost.size() - 1, 0);
+      numTx.put(flow.getName(), linkTxAndTotalCost.subList(0, numLinks).toArray(new Integer[0]));
+    }
+    hyperPeriod = period;
+    maxPhase = maxDeadlinePhase(workLoad.getFlows().values());
+    maxFlowLength = flowLength;
+    numTxAttemptsPerLink = numTx;
+    topology = new TopologyAnalysis(workLoad.getFlows().values(), workLoad.getNumNodes());
+  }
+
+  /*
+   * Returns the phase of the flow with the longest deadline, which is the value WorkLoad has always
+   * reported as its maximum phase and which sizes the poset schedules. Ties are broken by the same
+   * MaxPhaseComparator queue WorkLoad used, so schedules are unchanged.
+   */
+  private static int maxDeadlinePhase(Collection<Flow> flows) {
+    if (flows.isEmpty()) {
+      return 0;
+    }
+    return new SchedulableObjectQueue<Flow>(new MaxPhaseComparator<Flow>(), flows).poll()
+        .getPhase();
+  }
+
+  /**
+   * @return the node names in alphabetical order, which is also their schedule column order
+   */
+  public String[] getNodeNamesOrderedAlphabetically() {
+    return nodeNamesOrderedAlphabetically.clone();
+  }
+
+  /**
+   * @return the (read-only) mapping from node names to their columns in a program schedule
+   */
+  public Map<String, Integer> getNodeIndices() {
+    return nodeIndices;
+  }
+
+  /**
+   * @return the least common multiple of the flow periods
+   */
+  public Integer getHyperPeriod() {
+    return hyperPeriod;
+  }
+
+  /**
+   * @return the phase of the flow with the longest deadline, or 0 if there are no flows
+   */
+  public Integer getMaxPhase() {
+    return maxPhase;
+  }
+
+  /**
+   * @return the number of nodes in the longest flow
+   */
+  public Integer getMaxFlowLength() {
+    return maxFlowLength;
+  }
+
+  /**
+   * @param flowName the flow name
+   * @return the number of Tx attempts needed on each link of the flow to meet its E2E target
+   */
+  public Integer[] getNumTxAttemptsPerLink(String flowName) {
+    return numTxAttemptsPerLink.getOrDefault(flowName, new Integer[0]).clone();
+  }
+
+  /**
+   * @return the analysis of the communication graph formed by the flows
+   */
+  public TopologyAnalysis getTopology() {
+    return topology;
+  }
+
+  /**
+   * @return the (read-only) map from node names to the number of flow links they have
+   */
+  public Map<String, Integer> getNodeConnectivity() {
+    return topology.getNodeConnectivity();
+  }
+
+  /**
+   * @param id the node id
+   * @return the (read-only) names of the nodes that share a link with the node in some flow
+   */
+  public Set<String> getConflicts(int id) {
+    return topology.getConflicts(id);
+  }
+
+  /**
+   * @param id the node id
+   * @return a copy of the ids of the nodes that share a link with the node in some flow
+   */
+  public BitSet getConflictIds(int id) {
+    return topology.getConflictIds(id);
+  }
+}
@@ -0,0 +1,179 @@
+package edu.uiowa.cs.warp;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TopologyAnalysis analyzes the communication graph formed by the flows of a workload: the base
+ * station(s), the connectivity of each node (the number of flow links it is on), and the distinct
+ * neighbors (conflicts) and degree of each node. The analysis is done in one pass over the flows
+ * when a workload's SynthesisContext is built, so posets read it rather than searching the flows
+ * for each flow they partition.
+ *
+ * <p>
+ * A TopologyAnalysis is immutable.
+ *
+ * @author agent
+ */
+public final class TopologyAnalysis {
+
+  private final String baseStation;
+  private final Set<String> baseStations;
+  private final Map<String, Integer> nodeConnectivity;
+  /* nodes adjacent to each node in some flow, indexed by node id */
+  private final List<Set<String>> conflicts;
+  private final BitSet[] conflictIds;
+
+  /**
+   * Analyzes flows, whose nodes must have ids less than numNodes.
+   *
+   * @param flows the flows of the workload
+   * @param numNodes the number of nodes in the workload
+   */
+  TopologyAnalysis(Collection<Flow> flows, int numNodes) {
+    conflicts = new ArrayList<Set<String>>(numNodes);
+    conflictIds = new BitSet[numNodes];
+    for (int id = 0; id < numNodes; id++) {
+      conflicts.add(new HashSet<String>());
+      conflictIds[id] = new BitSet(numNodes);
+    }
+    var connectivity = new HashMap<String, Integer>();
+    var flowEnds = new ArrayList<String[]>(flows.size()); // {src, snk} of each flow
+    for (Flow flow : flows) {
+      var nodes = flow.getNodes();
+      var size = nodes.size();
+      if (size > 0) {
+        flowEnds.add(new String[] {nodes.get(0).getName(), nodes.get(size - 1).getName()});
+      }
+      for (int i = 0; i < size; i++) {
+        var node = nodes.get(i);
+        /* src or snk => 1 connection, else 2 */
+        var connections = (i == 0 || i == size - 1) ? 1 : 2;
+        connectivity.merge(node.getName(), connections, Integer::sum);
+        if (i > 0) {
+          addConflict(nodes.get(i - 1), node);
+          addConflict(node, nodes.get(i - 1));
+        }
+      }
+    }
+    nodeConnectivity = Collections.unmodifiableMap(connectivity);
+    baseStation = findBaseStation(flowEnds);
+    baseStations = Collections.unmodifiableSet(findBaseStations(flowEnds));
+  }
+
+  private void addConflict(Node node, Node conflict) {
+    conflicts.get(node.getId()).add(conflict.getName());
+    conflictIds[node.getId()].set(conflict.getId());
+  }
+
+  /*
+   * Returns the src or snk of the first flow that is the first to be found in a flow where the
+   * other isn't, or the snk of the first flow if they tie, or null if there are no flows.
+   */
+  private static String findBaseStation(ArrayList<String[]> flowEnds) {
+    if (flowEnds.isEmpty()) {
+      return null;
+    }
+    var srcBaseStation = flowEnds.get(0)[0];
+    var snkBaseStation = flowEnds.get(0)[1];
+    for (int i = 1; i < flowEnds.size(); i++) {
+      var src = flowEnds.get(i)[0];
+      var snk = flowEnds.get(i)[1];
+      var srcIsSrc = srcBaseStation.equals(src);
+      var snkIsSnk = snkBaseStation.equals(snk);
+      var srcIsSnk = srcBaseStation.equals(snk);
+      var snkIsSrc = snkBaseStation.equals(src);
+      if (!srcIsSrc && snkIsSnk) {
+        return snkBaseStation;
+      } else if (srcIsSrc && !snkIsSnk) {
+        return srcBaseStation;
+      } else if (!srcIsSnk && snkIsSrc) {
+        return snkBaseStation;
+      } else if (srcIsSnk && !snkIsSrc) {
+        return srcBaseStation;
+      }
+    }
+    /* initial snk and src tie for base station, so pick initial snk */
+    return snkBaseStation;
+  }
+
+  /*
+   * Returns the nodes that are the src or snk of every flow.
+   */
+  private static Set<String> findBaseStations(ArrayList<String[]> flowEnds) {
+    var candidates = new LinkedHashSet<String>();
+    if (!flowEnds.isEmpty()) {
+      candidates.add(flowEnds.get(0)[0]);
+      candidates.add(flowEnds.get(0)[1]);
+    }
+    for (String[] ends : flowEnds) {
+      candidates.removeIf(name -> !name.equals(ends[0]) && !name.equals(ends[1]));
+    }
+    return candidates;
+  }
+
+  /**
+   * Returns the base station the poset algorithms use: the node that is always a src or snk of a
+   * flow. If the src and snk of the first flow tie, the snk is returned. If there are multiple
+   * base stations, only the first one found is returned.
+   *
+   * @return the name of the base station, or null if there are no flows
+   */
+  public String getBaseStation() {
+    return baseStation;
+  }
+
+  /**
+   * @return the (read-only) names of all nodes that are the src or snk of every flow
+   */
+  public Set<String> getBaseStations() {
+    return baseStations;
+  }
+
+  /**
+   * @return the (read-only) map from node names to the number of flow links they are on
+   */
+  public Map<String, Integer> getNodeConnectivity() {
+    return nodeConnectivity;
+  }
+
+  /**
+   * @param name the node name
+   * @return the number of flow links the node is on, or 0 if it is on none
+   */
+  public Integer getNumEdges(String name) {
+    return nodeConnectivity.getOrDefault(name, 0);
+  }
+
+  /**
+   * @param id the node id
+   * @return the number of distinct nodes that share a link with the node in some flow
+   */
+  public Integer getDegree(int id) {
+    return conflicts.get(id).size();
+  }
+
+  /**
+   * @param id the node id
+   * @return the (read-only) names of the nodes that share a link with the node in some flow
+   */
+  public Set<String> getConflicts(int id) {
+    return Collections.unmodifiableSet(conflicts.get(id));
+  }
+
+  /**
+   * @param id the node id
+   * @return a copy of the ids of the nodes that share a link with the node in some flow
+   */
+  public BitSet getConflictIds(int id) {
+    return (BitSet) conflictIds[id].clone();
+  }
+}
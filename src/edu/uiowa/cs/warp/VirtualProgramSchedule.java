@@ -0,0 +1,287 @@
+package edu.uiowa.cs.warp;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * VirtualProgramSchedule is the base of the ProgramSchedules that
+ * keep their time slots in their own storage rather than in the
+ * ArrayList they inherit, which stays empty. A subclass provides
+ * get(int) and size(), and set(int, ...), add(int, ...) and
+ * remove(int) for the changes it supports. Every other List method,
+ * including iterators, sub-lists, streams and the bulk operations,
+ * is overridden here to work through those five methods, so none
+ * of them ever sees the empty ArrayList. Changes a subclass doesn't
+ * support throw an UnsupportedOperationException.
+ *
+ * Rows are returned as new InstructionTimeSlots, so changing a row
+ * returned by get(int) doesn't change the schedule.
+ *
+ * @author agent
+ *
+ */
+abstract class VirtualProgramSchedule extends ProgramSchedule {
+
+	private static final long serialVersionUID = 1L;
+
+	VirtualProgramSchedule() {
+		super();
+	}
+
+	@Override
+	public abstract InstructionTimeSlot get(int row);
+
+	@Override
+	public abstract int size();
+
+	@Override
+	public InstructionTimeSlot set(int row, InstructionTimeSlot timeSlot) {
+		throw unsupported();
+	}
+
+	@Override
+	public void add(int row, InstructionTimeSlot timeSlot) {
+		throw unsupported();
+	}
+
+	@Override
+	public InstructionTimeSlot remove(int row) {
+		throw unsupported();
+	}
+
+	/**
+	 * @return the exception thrown by the changes this schedule
+	 * doesn't support
+	 */
+	UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException(
+				getClass().getSimpleName() + " doesn't support this change");
+	}
+
+	/*
+	 * Returns a List view of this schedule. AbstractList implements
+	 * every List method with the five methods above.
+	 */
+	private List<InstructionTimeSlot> rows() {
+		return new AbstractList<InstructionTimeSlot>() {
+			@Override
+			public InstructionTimeSlot get(int row) {
+				return VirtualProgramSchedule.this.get(row);
+			}
+
+			@Override
+			public int size() {
+				return VirtualProgramSchedule.this.size();
+			}
+
+			@Override
+			public InstructionTimeSlot set(int row, InstructionTimeSlot timeSlot) {
+				return VirtualProgramSchedule.this.set(row, timeSlot);
+			}
+
+			@Override
+			public void add(int row, InstructionTimeSlot timeSlot) {
+				VirtualProgramSchedule.this.add(row, timeSlot);
+			}
+
+			@Override
+			public InstructionTimeSlot remove(int row) {
+				return VirtualProgramSchedule.this.remove(row);
+			}
+		};
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public Integer getNumRows() {
+		return size();
+	}
+
+	@Override
+	public boolean add(InstructionTimeSlot timeSlot) {
+		add(size(), timeSlot);
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends InstructionTimeSlot> timeSlots) {
+		return rows().addAll(timeSlots);
+	}
+
+	@Override
+	public boolean addAll(int row, Collection<? extends InstructionTimeSlot> timeSlots) {
+		return rows().addAll(row, timeSlots);
+	}
+
+	@Override
+	public boolean remove(Object timeSlot) {
+		return rows().remove(timeSlot);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> timeSlots) {
+		return rows().removeAll(timeSlots);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> timeSlots) {
+		return rows().retainAll(timeSlots);
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super InstructionTimeSlot> filter) {
+		return rows().removeIf(filter);
+	}
+
+	@Override
+	protected void removeRange(int fromRow, int toRow) {
+		rows().subList(fromRow, toRow).clear();
+	}
+
+	@Override
+	public void clear() {
+		rows().clear();
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<InstructionTimeSlot> operator) {
+		rows().replaceAll(operator);
+	}
+
+	@Override
+	public void sort(Comparator<? super InstructionTimeSlot> comparator) {
+		rows().sort(comparator);
+	}
+
+	@Override
+	public boolean contains(Object timeSlot) {
+		return rows().contains(timeSlot);
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> timeSlots) {
+		return rows().containsAll(timeSlots);
+	}
+
+	@Override
+	public int indexOf(Object timeSlot) {
+		return rows().indexOf(timeSlot);
+	}
+
+	@Override
+	public int lastIndexOf(Object timeSlot) {
+		return rows().lastIndexOf(timeSlot);
+	}
+
+	@Override
+	public Iterator<InstructionTimeSlot> iterator() {
+		return rows().iterator();
+	}
+
+	@Override
+	public ListIterator<InstructionTimeSlot> listIterator() {
+		return rows().listIterator();
+	}
+
+	@Override
+	public ListIterator<InstructionTimeSlot> listIterator(int row) {
+		return rows().listIterator(row);
+	}
+
+	@Override
+	public List<InstructionTimeSlot> subList(int fromRow, int toRow) {
+		return rows().subList(fromRow, toRow);
+	}
+
+	@Override
+	public Spliterator<InstructionTimeSlot> spliterator() {
+		return rows().spliterator();
+	}
+
+	@Override
+	public void forEach(Consumer<? super InstructionTimeSlot> action) {
+		for (InstructionTimeSlot timeSlot: this) { // uses the subclass iterator, if any
+			action.accept(timeSlot);
+		}
+	}
+
+	@Override
+	public Object[] toArray() {
+		return rows().toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] array) {
+		return rows().toArray(array);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return rows().equals(obj);
+	}
+
+	@Override
+	public int hashCode() {
+		return rows().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return rows().toString();
+	}
+
+	/*
+	 * The first and last methods below override the ones Java 21
+	 * adds to ArrayList, which read its (empty) storage directly.
+	 * They aren't marked @Override so the class builds on Java 17.
+	 */
+
+	public InstructionTimeSlot getFirst() {
+		if (isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return get(0);
+	}
+
+	public InstructionTimeSlot getLast() {
+		if (isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return get(size() - 1);
+	}
+
+	public void addFirst(InstructionTimeSlot timeSlot) {
+		add(0, timeSlot);
+	}
+
+	public void addLast(InstructionTimeSlot timeSlot) {
+		add(size(), timeSlot);
+	}
+
+	public InstructionTimeSlot removeFirst() {
+		if (isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return remove(0);
+	}
+
+	public InstructionTimeSlot removeLast() {
+		if (isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return remove(size() - 1);
+	}
+}
@@ -30,6 +30,12 @@ import argparser.StringHolder;
 import edu.uiowa.cs.warp.SystemAttributes.ScheduleChoices;
 import edu.uiowa.cs.warp.Visualization.SystemChoices;
 import edu.uiowa.cs.warp.Visualization.WorkLoadChoices;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 
@@ -77,11 +83,21 @@ public class Warp {
    */
   private static final Integer DEFAULT_FAULTS_TOLERATED = 1;
 
+  /**
+   * The default number of scheduler variants synthesized in parallel by -a (command line option).
+   */
+  private static final Integer DEFAULT_JOBS = 1;
+
   /**
    * The number of wireless channels available for scheduling.
    */
   private static Integer nChannels;
   
+  /**
+   * The number of scheduler variants synthesized in parallel when all are requested.
+   */
+  private static Integer numJobs;
+
   /**
    * The number of faults tolerated per edge.
    */
@@ -194,19 +210,13 @@ public class Warp {
       }
       // Create and visualize the Warp System
       if (schedulerRequested) {
-        WarpInterface warp = SystemFactory.create(workLoad, nChannels, schedulerSelected);
-        verifyPerformanceRequirements(warp);
-        for (SystemChoices choice : SystemChoices.values()) {
-          visualize(warp, choice); // visualize all System choices
-        }
+        synthesize(workLoad, schedulerSelected, System.out, System.err);
+      } else if (numJobs > 1) { // create a system for all scheduler choices in parallel
+        synthesizeInParallel(workLoad);
       } else { // create a system for all scheduler choices
         for (ScheduleChoices sch : ScheduleChoices.values()) {
           schedulerSelected = sch;
-          WarpInterface warp = SystemFactory.create(workLoad, nChannels, schedulerSelected);
-          verifyPerformanceRequirements(warp);
-          for (SystemChoices choice : SystemChoices.values()) {
-            visualize(warp, choice); // visualize all System choices
-          }
+          synthesize(workLoad, schedulerSelected, System.out, System.err);
         }
       }
     } else { // visualize warp workload, source program and other requested items
@@ -217,8 +227,9 @@ public class Warp {
       if (gvRequested) {
         visualize(workLoad, WorkLoadChoices.GRAPHVIZ);
       }
-      WarpInterface warp = SystemFactory.create(workLoad, nChannels, schedulerSelected);
-      verifyPerformanceRequirements(warp);
+      WarpInterface warp =
+          SystemFactory.create(workLoad.snapshot(), nChannels, schedulerSelected);
+      verifyPerformanceRequirements(warp, schedulerSelected, System.out, System.err);
       visualize(warp, SystemChoices.SOURCE);
       if (caRequested) {
         visualize(warp, SystemChoices.CHANNEL);
@@ -236,6 +247,67 @@ public class Warp {
 
   }
 
+  /**
+   * Creates the Warp system for a snapshot of workLoad with the specified scheduler, verifies its
+   * performance requirements, and creates all of its System visualizations. The schedulers change
+   * the workload they are given (e.g., flow order and node channels), so each one gets its own
+   * snapshot of workLoad as it was read. Thus, each result is the same as running that scheduler by
+   * itself, whether the schedulers are run one after another or in parallel. The messages and
+   * errors reported while the system is synthesized and verified, including those of the threads
+   * it uses, are printed to out and err.
+   *
+   * @param workLoad	The WorkLoad to schedule.
+   * @param scheduler	The scheduler to use.
+   * @param out		The stream for messages.
+   * @param err		The stream for errors.
+   */
+  private static void synthesize(WorkLoad workLoad, ScheduleChoices scheduler, PrintStream out,
+      PrintStream err) {
+    var snapshot = workLoad.snapshot();
+    snapshot.setOutput(out, err);
+    WarpInterface warp = SystemFactory.create(snapshot, nChannels, scheduler);
+    verifyPerformanceRequirements(warp, scheduler, out, err);
+    for (SystemChoices choice : SystemChoices.values()) {
+      visualize(warp, choice); // visualize all System choices
+    }
+  }
+
+  /**
+   * Synthesizes the Warp system for every scheduler choice on a pool of numJobs threads. Each
+   * scheduler prints to its own buffers, which are then printed in ScheduleChoices order, so the
+   * output is the same no matter how the jobs are interleaved, and the same as synthesizing them
+   * one after another.
+   *
+   * @param workLoad	The WorkLoad to schedule.
+   */
+  private static void synthesizeInParallel(WorkLoad workLoad) {
+    var executor = Executors.newFixedThreadPool(numJobs);
+    try {
+      var jobs = new ArrayList<Future<byte[][]>>();
+      for (ScheduleChoices sch : ScheduleChoices.values()) {
+        jobs.add(executor.submit(() -> {
+          var out = new ByteArrayOutputStream();
+          var err = new ByteArrayOutputStream();
+          try (var outStream = new PrintStream(out); var errStream = new PrintStream(err)) {
+            synthesize(workLoad, sch, outStream, errStream);
+          }
+          return new byte[][] {out.toByteArray(), err.toByteArray()};
+        }));
+      }
+      for (Future<byte[][]> job : jobs) { // print the output in ScheduleChoices order
+        var output = job.get();
+        System.out.write(output[0], 0, output[0].length);
+        System.err.write(output[1], 0, output[1].length);
+      }
+      System.out.flush();
+      System.err.flush();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException("Parallel synthesis failed", e);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   /**
    * Visualizes the workload based on the specified choice.
    *
@@ -278,30 +350,38 @@ public class Warp {
    * as deadlines and reliabilities.
    *
    * @param warp The WarpInterface instance to verify.
-   */
-  private static void verifyPerformanceRequirements(WarpInterface warp) {
-    verifyDeadlines(warp);
-    verifyReliabilities(warp);
-    verifyNoChannelConflicts(warp);
+   * @param scheduler The scheduler used to create warp.
+   * @param out The stream for messages.
+   * @param err The stream for errors.
+   */
+  private static void verifyPerformanceRequirements(WarpInterface warp,
+      ScheduleChoices scheduler, PrintStream out, PrintStream err) {
+    verifyDeadlines(warp, scheduler, out, err);
+    verifyReliabilities(warp, scheduler, out, err);
+    verifyNoChannelConflicts(warp, out, err);
   }
 
   /**
    * Verifies if all flows meet the reliability requirements in the Warp system.
    *
    * @param warp The WarpInterface instance to verify.
+   * @param scheduler The scheduler used to create warp.
+   * @param out The stream for messages.
+   * @param err The stream for errors.
    */
-  private static void verifyReliabilities(WarpInterface warp) {
-    if (schedulerSelected != ScheduleChoices.RTHART) {
+  private static void verifyReliabilities(WarpInterface warp, ScheduleChoices scheduler,
+      PrintStream out, PrintStream err) {
+    if (scheduler != ScheduleChoices.RTHART) {
       /* RealTime HART doesn't adhere to reliability targets */
       if (!warp.reliabilitiesMet()) {
-        System.err.printf(
+        err.printf(
             "\n\tERROR: Not all flows meet the end-to-end "
                 + "reliability of %s under %s scheduling.\n",
-            String.valueOf(e2e), schedulerSelected.toString());
+            String.valueOf(e2e), scheduler.toString());
       } else if (verboseMode) {
-        System.out.printf(
+        out.printf(
             "\n\tAll flows meet the end-to-end reliability " + "of %s under %s scheduling.\n",
-            String.valueOf(e2e), schedulerSelected.toString());
+            String.valueOf(e2e), scheduler.toString());
       }
     }
   }
@@ -310,15 +390,19 @@ public class Warp {
    * Verifies if all flows meet their deadlines in the Warp system.
    *
    * @param warp The WarpInterface instance to verify.
+   * @param scheduler The scheduler used to create warp.
+   * @param out The stream for messages.
+   * @param err The stream for errors.
    */
-  private static void verifyDeadlines(WarpInterface warp) {
+  private static void verifyDeadlines(WarpInterface warp, ScheduleChoices scheduler,
+      PrintStream out, PrintStream err) {
     if (!warp.deadlinesMet()) {
-      System.err.printf("\n\tERROR: Not all flows meet their deadlines under %s scheduling.\n",
-          schedulerSelected.toString());
+      err.printf("\n\tERROR: Not all flows meet their deadlines under %s scheduling.\n",
+          scheduler.toString());
       visualize(warp, SystemChoices.DEADLINE_REPORT);
     } else if (verboseMode) {
-      System.out.printf("\n\tAll flows meet their deadlines under %s scheduling.\n",
-          schedulerSelected.toString());
+      out.printf("\n\tAll flows meet their deadlines under %s scheduling.\n",
+          scheduler.toString());
     }
   }
 
@@ -326,16 +410,18 @@ public class Warp {
    * Verifies if there are any channel conflicts in the Warp system.
    *
    * @param warp The WarpInterface instance to verify.
+   * @param out The stream for messages.
+   * @param err The stream for errors.
    */
-  private static void verifyNoChannelConflicts(WarpInterface warp) {
+  private static void verifyNoChannelConflicts(WarpInterface warp, PrintStream out,
+      PrintStream err) {
     if (warp.toChannelAnalysis().isChannelConflict()) {
-      System.err
-          .printf("\n\tERROR: Channel conficts exists. See Channel Visualization for details.\n");
+      err.printf("\n\tERROR: Channel conficts exists. See Channel Visualization for details.\n");
       if (!caRequested) { // only need to create the visualization if not already requested
         visualize(warp, SystemChoices.CHANNEL);
       }
     } else if (verboseMode) {
-      System.out.printf("\n\tNo channel conflicts detected.\n");
+      out.printf("\n\tNo channel conflicts detected.\n");
     }
   }
 
@@ -352,6 +438,7 @@ public class Warp {
     StringHolder schedulerSelected = new StringHolder();
     IntHolder channels = new IntHolder();
     IntHolder faults = new IntHolder();
+    IntHolder jobs = new IntHolder();
     DoubleHolder m = new DoubleHolder();
     DoubleHolder end2end = new DoubleHolder();
     BooleanHolder gui = new BooleanHolder();
@@ -392,6 +479,9 @@ public class Warp {
         "-ca  %v #create a channel analysis file (tab delimited .csv) for the warp program", ca);
     parser.addOption("-s  %v #create a simulator input file (.txt) for the warp program", s);
     parser.addOption("-a, --all  %v #create all output files (activates -gv, -wf, -ra, -s)", all);
+    parser.addOption(
+        "-j, --jobs %d {[1,64]} #number of schedulers to run in parallel when -a is used without -sch",
+        jobs);
     parser.addOption("-l, --latency  %v #generates end-to-end latency report file (.txt)", latency);
     parser.addOption("-i, --input %s #<InputFile> of graph flows (workload)", input);
     parser.addOption("-o, --output %s #<OutputDIRECTORY> where output files will be placed",
@@ -417,6 +507,11 @@ public class Warp {
     } else {
       numFaults = DEFAULT_FAULTS_TOLERATED; // set to default
     }
+    if (jobs.value > 0) { // number of scheduler variants synthesized in parallel
+      numJobs = jobs.value; // set option specified
+    } else {
+      numJobs = DEFAULT_JOBS; // set to default
+    }
     if (m.value > 0.0) { // global variable for minimum Link Quality in system
       minLQ = m.value; // set option specified
     } else {
@@ -496,6 +591,7 @@ public class Warp {
     System.out.println("\tcaRequest flag=" + caRequested);
     System.out.println("\tsimRequest flag=" + simRequested);
     System.out.println("\tallOutFilesRequest flag=" + allRequested);
+    System.out.println("\tjobs=" + numJobs);
     System.out.println("\tlatency flag=" + latencyRequested);
     if (inputFile != null) {
       System.out.println("\tinput file=" + inputFile);
@@ -22,9 +22,8 @@ public class WarpPoset extends Poset {
 	 */
 	@Override
 	protected Integer findCoordinator(ArrayList<Node> nodesInFlow) {
-		/* first find base station(s) */
-		var baseStation = findBaseStation();
-		var baseName = baseStation.getName();
+		/* the base station is found once for the workload */
+		var baseName = getTopology().getBaseStation();
 		var size = nodesInFlow.size();
 		/* assume flow sink is the coordinator */
 		Integer coordinatorIndex = size-1;
@@ -4,11 +4,12 @@
 package edu.uiowa.cs.warp;
 
 import edu.uiowa.cs.utilities.Utilities;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-// import java.util.HashMap;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -48,6 +49,11 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
                                                                           // flows to preserve their
                                                                           // order
   private ArrayList<String> flowNamesInPriorityOrder = new ArrayList<>();
+  private Node[] nodesById; // NodeMap nodes indexed by their dense id
+  private HashMap<String, Integer> nodeIds; // node name to dense id
+  private SynthesisContext synthesisContext; // built on demand; null when nodes or flows change
+  private PrintStream out; // where messages are printed; null for System.out
+  private PrintStream err; // where errors are printed; null for System.err
   // private FileManager fm;
 
   
@@ -68,6 +74,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
      * objects
      */
     WorkLoadListener.buildNodesAndFlows(this);
+    assignIds();
   }
 
   /**
@@ -90,6 +97,74 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
      * objects
      */
     WorkLoadListener.buildNodesAndFlows(this);
+    assignIds();
+  }
+
+  /**
+   * Creates a snapshot of workLoad: a new WorkLoad with the same parameters, nodes and flows,
+   * copied without parsing the workload description again. The nodes and flows are copied as
+   * they were finalized, so the channels and release times set by scheduling workLoad are not.
+   * The snapshot shares no mutable state with workLoad, so each can be scheduled independently
+   * (e.g., on different threads). It does share workLoad's SynthesisContext, which is immutable.
+   *
+   * @param workLoad	The WorkLoad to copy.
+   */
+  WorkLoad(WorkLoad workLoad) {
+    super(workLoad);
+    setDefaultParameters();
+    this.numFaults = workLoad.numFaults;
+    this.minPacketReceptionRate = workLoad.minPacketReceptionRate;
+    this.e2e = workLoad.e2e;
+    this.name = workLoad.name;
+    this.intForNodeNames = workLoad.intForNodeNames;
+    this.intForFlowNames = workLoad.intForFlowNames;
+    for (Node node : workLoad.nodes.values()) {
+      nodes.put(node.getName(), new Node(node.getName(), node.getPriority(), node.getIndex()));
+    }
+    for (String flowName : workLoad.flowNamesInOriginalOrder) {
+      flows.put(flowName, new Flow(workLoad.flows.get(flowName)));
+    }
+    flowNamesInOriginalOrder.addAll(workLoad.flowNamesInOriginalOrder);
+    flowNamesInPriorityOrder.addAll(workLoad.flowNamesInPriorityOrder);
+    assignIds();
+    this.synthesisContext = workLoad.getSynthesisContext();
+    this.out = workLoad.out;
+    this.err = workLoad.err;
+  }
+
+  /**
+   * @return a snapshot of this workload, as it was read, that shares no mutable state with it
+   */
+  public WorkLoad snapshot() {
+    return new WorkLoad(this);
+  }
+
+  /**
+   * Prints the messages and errors reported while this workload is read, changed and scheduled,
+   * including those of the programs and schedules built for it, to out and err instead of
+   * System.out and System.err. This lets the workloads of jobs that run at the same time print
+   * to their own streams.
+   *
+   * @param out	The stream for messages.
+   * @param err	The stream for errors.
+   */
+  public void setOutput(PrintStream out, PrintStream err) {
+    this.out = out;
+    this.err = err;
+  }
+
+  /**
+   * @return the stream messages about this workload are printed to
+   */
+  public PrintStream getOut() {
+    return (out != null) ? out : System.out;
+  }
+
+  /**
+   * @return the stream errors about this workload are printed to
+   */
+  public PrintStream getErr() {
+    return (err != null) ? err : System.err;
   }
 
   private void setDefaultParameters() {
@@ -100,7 +175,112 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
     flowNamesInOriginalOrder = new ArrayList<>(); // array to hold names of flows to preserve their
                                                   // order
     flowNamesInPriorityOrder = new ArrayList<>();
+    nodesById = new Node[0];
+    nodeIds = new HashMap<>();
     numFaults = DEFAULT_TX_NUM;
+    synthesisContext = null;
+  }
+
+  /**
+   * Returns the analysis of this workload that every scheduler choice shares, building it the
+   * first time it is needed after the nodes or flows change.
+   *
+   * @return the synthesis context of this workload
+   */
+  public synchronized SynthesisContext getSynthesisContext() {
+    if (synthesisContext == null) {
+      synthesisContext = new SynthesisContext(this);
+    }
+    return synthesisContext;
+  }
+
+  /**
+   * Interns the nodes and flows of the finalized workload as dense ints, so schedulers and
+   * analyses can index arrays instead of hashing names. A node's id is its position in
+   * getNodeNamesOrderedAlphabetically(), which is also its column in a program schedule, and it is
+   * set on both the NodeMap node and the node's copies in each flow. A flow's id is its index,
+   * the order it was read from the graph file.
+   */
+  private void assignIds() {
+    var orderedNodes = getNodeNamesOrderedAlphabetically();
+    nodesById = new Node[orderedNodes.length];
+    nodeIds = new HashMap<>();
+    for (int id = 0; id < orderedNodes.length; id++) {
+      var node = nodes.get(orderedNodes[id]);
+      node.setId(id);
+      nodesById[id] = node;
+      nodeIds.put(node.getName(), id);
+    }
+    synthesisContext = null;
+    for (Flow flow : flows.values()) {
+      for (Node node : flow.nodes) {
+        node.setId(nodeIds.get(node.getName()));
+      }
+    }
+  }
+
+  /**
+   * @return the number of nodes in the workload, which is one more than the largest node id
+   */
+  public Integer getNumNodes() {
+    return nodesById.length;
+  }
+
+  /**
+   * @return the number of flows in the workload, which is one more than the largest flow id
+   */
+  public Integer getNumFlows() {
+    return flowNamesInOriginalOrder.size();
+  }
+
+  /**
+   * @param nodeName the node name
+   * @return the node's dense id, or Node.UNKNOWN_ID if there is no such node
+   */
+  public Integer getNodeId(String nodeName) {
+    return nodeIds.getOrDefault(nodeName, Node.UNKNOWN_ID);
+  }
+
+  /**
+   * @param id the node id
+   * @return the name of the node with that id
+   */
+  public String getNodeName(int id) {
+    return nodesById[id].getName();
+  }
+
+  /**
+   * @param id the node id
+   * @return the NodeMap node with that id
+   */
+  public Node getNode(int id) {
+    return nodesById[id];
+  }
+
+  /**
+   * Returns the (shared, read-only) mapping from node names to dense ids, which are the node
+   * columns in a program schedule.
+   *
+   * @return the node name to id map
+   */
+  public HashMap<String, Integer> getNodeIds() {
+    return nodeIds;
+  }
+
+  /**
+   * @param flowName the flow name
+   * @return the flow's dense id
+   */
+  public Integer getFlowId(String flowName) {
+    return getFlowIndex(flowName);
+  }
+
+  /**
+   * @param id the flow id
+   * @return the name of the flow with that id
+   */
+  public String getFlowName(int id) {
+    return flowNamesInOriginalOrder.get(id);
   }
 
   /**
@@ -189,8 +369,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
    * @return the maximum phase of all flows
    */
   public Integer getMaxPhase() {
-    var queue = new SchedulableObjectQueue<Flow>(new MaxPhaseComparator<Flow>(), flows.values());
-    return queue.poll().getPhase();
+    return getSynthesisContext().getMaxPhase();
   }
 
   /**
@@ -227,6 +406,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
    */
   public void setFlows(FlowMap flows) {
     this.flows = flows;
+    this.synthesisContext = null;
   }
 
   /**
@@ -234,6 +414,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
    */
   public void setNodes(NodeMap nodes) {
     this.nodes = nodes;
+    this.synthesisContext = null;
   }
 
   /**
@@ -275,6 +456,22 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
     return node.getChannel();
   }
 
+  /**
+   * @param id the id of the node whose channel is to be set
+   * @param channel the channel to set
+   */
+  public void setNodeChannel(int id, Integer channel) {
+    nodesById[id].setChannel(channel);
+  }
+
+  /**
+   * @param id the node id
+   * @return the node channel
+   */
+  public Integer getNodeChannel(int id) {
+    return nodesById[id].getChannel();
+  }
+
   public void addFlow(String flowName) {
     /*
      * add a new flow node to the Flows dictionary. Only name, priority, and index are changed from
@@ -286,7 +483,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
      * over written
      */
     if (flows.containsKey(flowName)) {
-      System.out.printf("\n\tWarning! A flow with name %s already exists. "
+      getOut().printf("\n\tWarning! A flow with name %s already exists. "
           + "It has been replaced with a new flow\n.");
     }
     var index = flows.size();
@@ -297,6 +494,64 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
                                // only set it once
     }
     flowNamesInOriginalOrder.add(flowName);
+    synthesisContext = null;
+  }
+
+  /**
+   * Adds a finalized flow to a workload that has already been built, just as if it had been read
+   * from the graph file after the other flows. The flow's nodes must already be in the workload,
+   * so the node ids (and schedule columns) of the workload don't change.
+   *
+   * @param flowName the name of the new flow
+   * @param priority the flow priority
+   * @param period the flow period
+   * @param deadline the flow deadline
+   * @param phase the flow phase
+   * @param nodeNames the nodes of the flow, from src to snk
+   */
+  public void addFlow(String flowName, Integer priority, Integer period, Integer deadline,
+      Integer phase, String[] nodeNames) {
+    if (flows.containsKey(flowName)) {
+      throw new IllegalArgumentException(String.format("Flow %s already exists", flowName));
+    }
+    if (nodeNames.length < 2) {
+      throw new IllegalArgumentException(
+          String.format("Flow %s needs a src and a snk node", flowName));
+    }
+    for (String nodeName : nodeNames) {
+      if (getNodeId(nodeName) == Node.UNKNOWN_ID) {
+        throw new IllegalArgumentException(
+            String.format("Flow %s: node %s is not in the workload", flowName, nodeName));
+      }
+    }
+    addFlow(flowName);
+    setFlowPriority(flowName, priority);
+    setFlowPeriod(flowName, period);
+    setFlowDeadline(flowName, deadline);
+    setFlowPhase(flowName, phase);
+    for (String nodeName : nodeNames) {
+      addNodeToFlow(flowName, nodeName);
+    }
+    finalizeCurrentFlow(flowName);
+  }
+
+  /**
+   * Removes a flow from the workload. The flows after it in the original order move up one
+   * index, so flow ids stay dense. Nodes are kept, even if no flow uses them anymore, so node ids
+   * (and schedule columns) don't change.
+   *
+   * @param flowName the name of the flow to remove
+   */
+  public void removeFlow(String flowName) {
+    if (flows.remove(flowName) == null) {
+      throw new IllegalArgumentException(String.format("Flow %s doesn't exist", flowName));
+    }
+    flowNamesInOriginalOrder.remove(flowName);
+    flowNamesInPriorityOrder.remove(flowName);
+    for (int index = 0; index < flowNamesInOriginalOrder.size(); index++) {
+      flows.get(flowNamesInOriginalOrder.get(index)).setIndex(index);
+    }
+    synthesisContext = null;
   }
 
   public Boolean isIntForNodeNames() { // returns true if all node names are ints
@@ -327,8 +582,10 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
     var flowNode = getFlow(flowName);
     var graphNode = new Node(nodeName, flowNode.nodes.size(), DEFAULT_INDEX);
     /* the priority is the node's index in the flow, which is the current array size */
+    graphNode.setId(getNodeId(nodeName)); // UNKNOWN_ID until the ids are assigned
     flowNode.addNode(graphNode);
     flowNode.linkTxAndTotalCost.add(DEFAULT_TX_NUM);
+    synthesisContext = null;
   }
 
 
@@ -356,21 +613,25 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
   public void setFlowPriority(String flowName, Integer priority) {
     var flowNode = getFlow(flowName);
     flowNode.setPriority(priority);
+    synthesisContext = null;
   }
 
   public void setFlowPeriod(String flowName, Integer period) {
     var flowNode = getFlow(flowName);
     flowNode.setPeriod(period);
+    synthesisContext = null;
   }
 
   public void setFlowDeadline(String flowName, Integer deadline) {
     var flowNode = getFlow(flowName);
     flowNode.setDeadline(deadline);
+    synthesisContext = null;
   }
 
   public void setFlowPhase(String flowName, Integer phase) {
     var flowNode = getFlow(flowName);
     flowNode.setPhase(phase);
+    synthesisContext = null;
   }
 
   public Integer getFlowIndex(String flowName) {
@@ -460,6 +721,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
     } else {
       finalizeFlowWithE2eParameters(flowName);
     }
+    synthesisContext = null;
   }
 /**
  * Calculates and retrieves the next release time for a specified flow at or after a given time. This method calculates the next release time for the specified flow that occurs at or after
@@ -522,7 +784,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
       flowNode.linkTxAndTotalCost = linkTxAndTotalCost;
       flows.put(flowName, flowNode); // update flow node in Flows array
     } else { // should never happen...
-      System.out.printf("\n\tWarning! Bad situation: Flow %s doesn't exist but "
+      getOut().printf("\n\tWarning! Bad situation: Flow %s doesn't exist but "
           + "trying to get its numTxPerLink property\n.", flowName);
     }
   }
@@ -537,7 +799,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
       flowNode.linkTxAndTotalCost = linkTxAndTotalCost;
       flows.put(flowName, flowNode); // update flow node in Flows array
     } else { // should never happen...
-      System.out.printf("\n\tWarning! Bad situation: Flow %s doesn't exist but "
+      getOut().printf("\n\tWarning! Bad situation: Flow %s doesn't exist but "
           + "trying to get its numTxPerLink property\n.", flowName);
     }
   }
@@ -757,7 +1019,7 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
     var flow = flows.get(flowName); // get the requested flow node
     if (flow == null) {// return empty node if not found
       flow = new Flow();
-      System.out.printf(FLOW_WARNING + "retrieve it\n.", flowName);
+      getOut().printf(FLOW_WARNING + "retrieve it\n.", flowName);
     }
     return flow;
   }
@@ -802,29 +1064,19 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
 
     } else {
       nodes = new String[0]; // return empty array
-      System.out.printf("\n\t Warning! No Flow with name %s.\n", flowName);
+      getOut().printf("\n\t Warning! No Flow with name %s.\n", flowName);
     }
     return nodes;
   }
 /**
  * Calculates and retrieves the hyper-period of all flows in the workload.
  * The hyper-period is the least common multiple (LCM) of the periods of all flows in the workload.
- * This method iterates through all flow names, calculates the LCM of their periods, and determines
- * the hyper-period. It will then return The hyper-period, which is the LCM of all flow periods in the workload.
+ * It is computed once, with the rest of the workload's SynthesisContext, rather than on every call.
  * 
  * @return
  */
   public Integer getHyperPeriod() {
-    var hyperPeriod = 1; // hyperPeriod is LCM of all periods. Initialize to 1
-    for (String flowName : getFlowNames()) {
-      // var dm = new Utlitities();
-      hyperPeriod = Utilities.lcm(hyperPeriod, getFlowPeriod(flowName)); // Find LCM of hyperPeriod
-                                                                         // so far and the current
-                                                                         // period, then update the
-                                                                         // hyperPeriod with that
-                                                                         // value
-    }
-    return hyperPeriod;
+    return getSynthesisContext().getHyperPeriod();
   }
 
   public Integer getTotalTxAttemptsInFlow(String flowName) {
@@ -865,10 +1117,6 @@ public class WorkLoad extends WorkLoadDescription implements ReliabilityParamete
   }
 
   public Integer maxFlowLength() {
-    Integer maxLength = 0;
-    for (Flow flow : flows.values()) {
-      maxLength = Math.max(maxLength, flow.nodes.size());
-    }
-    return maxLength;
+    return getSynthesisContext().getMaxFlowLength();
   }
 }
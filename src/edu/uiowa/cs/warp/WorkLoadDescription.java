@@ -32,6 +32,20 @@ public class WorkLoadDescription extends VisualizationObject {
     initialize(inputFileName);
   }
 
+  /**
+   * Creates a copy of description that shares its (immutable) contents, without reading the
+   * input file again.
+   *
+   * @param description the description to copy
+   */
+  WorkLoadDescription(WorkLoadDescription description) {
+    super(new FileManager(), EMPTY, INPUT_FILE_SUFFIX); // VisualizationObject constructor
+    this.fm = this.getFileManager();
+    this.inputGraphString = description.inputGraphString;
+    this.inputFileName = description.inputFileName;
+    this.description = new Description(inputGraphString);
+  }
+
   @Override
   public Description visualization() {
     return description;
@@ -0,0 +1,28 @@
+package edu.uiowa.cs.warp;
+
+/**
+ * AllTests runs every WARP test and exits with a non-zero status if any of them fail. Run it from
+ * the project root with the WARP classes, the test classes and CS2820.jar on the class path:
+ *
+ * <pre>
+ * javac -d bin -cp CS2820.jar src/edu/uiowa/cs/warp/*.java
+ * javac -d test-bin -cp bin:CS2820.jar test/edu/uiowa/cs/warp/*.java
+ * java -cp bin:test-bin:CS2820.jar edu.uiowa.cs.warp.AllTests
+ * </pre>
+ *
+ * @author sgoddard
+ */
+public class AllTests {
+
+  public static void main(String[] args) throws Exception {
+    var failures = 0;
+    failures += ProgramScheduleTest.run();
+    failures += ScheduleProbeAllocationTest.run();
+    failures += SynthesisContextTest.run();
+    failures += FlowAdmissionTest.run();
+    failures += FlowRemovalTest.run();
+    failures += GoldenOutputTest.run();
+    System.out.println(failures == 0 ? "All tests passed" : failures + " test(s) failed");
+    System.exit(failures == 0 ? 0 : 1);
+  }
+}
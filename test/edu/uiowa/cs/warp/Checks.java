@@ -0,0 +1,78 @@
+package edu.uiowa.cs.warp;
+
+/**
+ * Checks counts and reports the failed checks of one test, for tests that are plain main()
+ * programs.
+ *
+ * @author sgoddard
+ */
+final class Checks {
+
+  private final String test;
+  private int numChecks = 0;
+  private int failures = 0;
+
+  /**
+   * @param test the name of the test, used in its report
+   */
+  Checks(String test) {
+    this.test = test;
+  }
+
+  /**
+   * Records a check, and reports it if it failed.
+   *
+   * @param passed whether the check passed
+   * @param description what was checked
+   */
+  void check(boolean passed, String description) {
+    numChecks++;
+    if (!passed) {
+      failures++;
+      System.out.printf("FAIL %s: %s\n", test, description);
+    }
+  }
+
+  /**
+   * Checks that expected equals actual.
+   *
+   * @param expected the expected value
+   * @param actual the actual value
+   * @param description what was checked
+   */
+  void checkEquals(Object expected, Object actual, String description) {
+    check(expected == null ? actual == null : expected.equals(actual),
+        String.format("%s: expected %s but was %s", description, expected, actual));
+  }
+
+  /**
+   * Checks that action throws an exception of type expected.
+   *
+   * @param expected the exception type
+   * @param action the action that should fail
+   * @param description what was checked
+   */
+  void checkThrows(Class<? extends Throwable> expected, Runnable action, String description) {
+    Throwable thrown = null;
+    try {
+      action.run();
+    } catch (Throwable t) {
+      thrown = t;
+    }
+    check(expected.isInstance(thrown),
+        String.format("%s: expected %s but %s", description, expected.getSimpleName(),
+            thrown == null ? "nothing was thrown" : thrown + " was thrown"));
+  }
+
+  /**
+   * Reports the result of the test.
+   *
+   * @return the number of failed checks
+   */
+  int report() {
+    if (failures == 0) {
+      System.out.printf("PASS %s (%d checks)\n", test, numChecks);
+    }
+    return failures;
+  }
+}
@@ -0,0 +1,189 @@
+package edu.uiowa.cs.warp;
+
+import edu.uiowa.cs.warp.SystemAttributes.ScheduleChoices;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * FlowAdmissionTest checks that flows can be added to programs that have already been built: the
+ * instructions of the flows already in the program stay where they are, the new flow only
+ * transmits on channels that are free in its time slots, and addFlow() reports whether deadlines
+ * are still met. For poset schedules, the program updated with the new flow must be the one
+ * toProgram() generates from the schedule.
+ *
+ * @author sgoddard
+ */
+public class FlowAdmissionTest {
+
+  private static final String[] NEW_FLOW_NODES = {"L", "K", "J"};
+
+  public static void main(String[] args) {
+    System.exit(run() == 0 ? 0 : 1);
+  }
+
+  static int run() {
+    var checks = new Checks("FlowAdmission");
+    for (int numChannels : new int[] {4, 16}) {
+      checkOriginalAdmission(checks, ScheduleChoices.PRIORITY, numChannels);
+      checkOriginalAdmission(checks, ScheduleChoices.RTHART, numChannels);
+      checkPosetAdmission(checks, numChannels);
+    }
+    checkDeadlineMiss(checks, ScheduleChoices.PRIORITY);
+    checkDeadlineMiss(checks, ScheduleChoices.POSET_PRIORITY);
+    checkInvalidFlows(checks);
+    return checks.report();
+  }
+
+  private static void checkOriginalAdmission(Checks checks, ScheduleChoices choice,
+      int numChannels) {
+    var name = choice + " on " + numChannels + " channels";
+    var program = build("StressTest", numChannels, choice);
+    var before = copy(program.getSchedule());
+    var schedulable = quietly(() -> program.addFlow("F11", 12, 50, 50, 0, NEW_FLOW_NODES));
+    var after = program.getSchedule();
+    checks.check(schedulable, name + ": F11 misses a deadline");
+    checks.check(after.size() == before.size(), name + ": the schedule length changed");
+    var moved = 0;
+    var added = 0;
+    var sharedChannels = 0;
+    for (int row = 0; row < before.size(); row++) {
+      for (int node = 0; node < before.get(row).size(); node++) {
+        var old = before.get(row).get(node);
+        var current = after.get(row, node);
+        if (!old.isSleep() && !old.equals(current.withoutFlow("F11"))) {
+          moved++;
+        }
+        if (current.hasFlow("F11")) {
+          added++;
+          sharedChannels += channelsSharedWithOthers(after, row, node);
+        }
+      }
+    }
+    checks.checkEquals(0, moved, name + ": instructions of other flows changed");
+    checks.check(added > 0, name + ": F11 wasn't scheduled");
+    checks.checkEquals(0, sharedChannels, name + ": F11 transmissions on channels in use");
+    checks.check(channelsMatch(program), name + ": channels available don't match the program");
+  }
+
+  private static void checkPosetAdmission(Checks checks, int numChannels) {
+    var name = "poset on " + numChannels + " channels";
+    var workLoad = quietly(() -> new WorkLoad(1, 0.9, 0.99, "StressTest.txt"));
+    workLoad.setFlowsInPriorityOrder();
+    var schedule = quietly(
+        () -> new NonPreemptiveSchedule(new ConnectivityPoset(workLoad), numChannels));
+    var program = quietly(schedule::toProgram);
+    var before = copy(program);
+    workLoad.addFlow("F11", 12, 50, 50, 0, NEW_FLOW_NODES);
+    workLoad.setFlowsInPriorityOrder();
+    var schedulable = quietly(() -> schedule.addFlow("F11"));
+    var updated = quietly(() -> schedule.updateProgram(program));
+    checks.check(schedulable, name + ": F11 misses a deadline");
+    checks.check(updated == program, name + ": the whole program was generated again");
+    checks.checkEquals(copy(quietly(schedule::toProgram)), copy(updated),
+        name + ": updated program");
+    checks.check(!before.equals(copy(updated)), name + ": F11 isn't in the program");
+  }
+
+  private static void checkDeadlineMiss(Checks checks, ScheduleChoices choice) {
+    var program = build("StressTest", 4, choice);
+    var schedulable = quietly(() -> program.addFlow("F11", 12, 50, 1, 0, NEW_FLOW_NODES));
+    checks.check(!schedulable, choice + ": F11 can't meet a deadline of 1 over two hops");
+  }
+
+  private static void checkInvalidFlows(Checks checks) {
+    var program = build("StressTest", 4, ScheduleChoices.PRIORITY);
+    checks.checkThrows(IllegalArgumentException.class,
+        () -> program.addFlow("F11", 12, 70, 70, 0, NEW_FLOW_NODES),
+        "a period that doesn't divide the hyperperiod");
+    checks.checkThrows(IllegalArgumentException.class,
+        () -> program.addFlow("F1", 12, 50, 50, 0, NEW_FLOW_NODES), "a flow already added");
+    checks.checkThrows(IllegalArgumentException.class,
+        () -> program.addFlow("F11", 12, 50, 50, 0, "L", "Z"), "a node not in the workload");
+  }
+
+  /*
+   * Returns the number of channels the instruction at row and node shares with the instructions
+   * of other transmitting nodes in the row. Waits listen on the channel of a transmission, so they
+   * share its channel.
+   */
+  private static int channelsSharedWithOthers(ProgramSchedule schedule, int row, int node) {
+    var shared = 0;
+    var channels = channels(schedule.get(row, node));
+    for (int other = 0; other < schedule.getNumColumns(); other++) {
+      var instruction = schedule.get(row, other);
+      if (other != node && !instruction.isWait()) {
+        shared += Long.bitCount(channels & channels(instruction));
+      }
+    }
+    return shared;
+  }
+
+  private static long channels(Instruction instruction) {
+    var channels = 0L;
+    for (var clause = instruction; clause != null; clause = clause.getElse()) {
+      if (clause.getChannel() >= 0) {
+        channels |= 1L << clause.getChannel();
+      }
+    }
+    return channels;
+  }
+
+  /*
+   * Returns true if the channels available in each time slot are the channels that none of the
+   * slot's instructions use.
+   */
+  static boolean channelsMatch(Program program) {
+    var schedule = program.getSchedule();
+    var result = true;
+    for (int row = 0; row < schedule.size(); row++) {
+      var used = 0L;
+      for (int node = 0; node < schedule.getNumColumns(); node++) {
+        used |= channels(schedule.get(row, node));
+      }
+      for (int channel = 0; channel < program.getNumChannels(); channel++) {
+        var free = (used & (1L << channel)) == 0;
+        result &= program.channelsAvailable.isAvailable(row, channel) == free;
+      }
+    }
+    return result;
+  }
+
+  static Program build(String example, int numChannels, ScheduleChoices choice) {
+    return quietly(() -> {
+      var workLoad = new WorkLoad(1, 0.9, 0.99, example + ".txt");
+      return new Program(workLoad, numChannels, choice);
+    });
+  }
+
+  static List<List<Instruction>> copy(ProgramSchedule schedule) {
+    var copy = new ArrayList<List<Instruction>>();
+    for (int row = 0; row < schedule.size(); row++) {
+      var timeSlot = new ArrayList<Instruction>();
+      for (int node = 0; node < schedule.getNumColumns(); node++) {
+        timeSlot.add(schedule.get(row, node));
+      }
+      copy.add(timeSlot);
+    }
+    return copy;
+  }
+
+  /*
+   * Returns what build returns, without the output and errors programs print while they are
+   * built. Some examples report the same code generation errors with every program.
+   */
+  static <T> T quietly(Supplier<T> build) {
+    var out = System.out;
+    var err = System.err;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      return build.get();
+    } finally {
+      System.setOut(out);
+      System.setErr(err);
+    }
+  }
+}
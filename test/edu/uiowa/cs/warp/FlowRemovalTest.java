@@ -0,0 +1,155 @@
+package edu.uiowa.cs.warp;
+
+import static edu.uiowa.cs.warp.FlowAdmissionTest.build;
+import static edu.uiowa.cs.warp.FlowAdmissionTest.channelsMatch;
+import static edu.uiowa.cs.warp.FlowAdmissionTest.copy;
+import static edu.uiowa.cs.warp.FlowAdmissionTest.quietly;
+
+import edu.uiowa.cs.warp.SystemAttributes.ScheduleChoices;
+
+/**
+ * FlowRemovalTest checks that flows can be removed from programs that have already been built.
+ * Admitting a flow and then removing it must give back the program, and for poset schedules the
+ * schedule, that was built without it. Removing a flow must leave none of its instructions, return
+ * its channels, and shorten the combined poset entries it was part of.
+ *
+ * @author sgoddard
+ */
+public class FlowRemovalTest {
+
+  private static final String[] NEW_FLOW_NODES = {"L", "K", "J"};
+
+  public static void main(String[] args) {
+    System.exit(run() == 0 ? 0 : 1);
+  }
+
+  static int run() {
+    var checks = new Checks("FlowRemoval");
+    for (int numChannels : new int[] {4, 16}) {
+      checkOriginalRoundTrip(checks, ScheduleChoices.PRIORITY, numChannels);
+      checkOriginalRoundTrip(checks, ScheduleChoices.RTHART, numChannels);
+      checkPosetRoundTrip(checks, numChannels);
+      checkPosetRemoval(checks, numChannels);
+    }
+    checkOriginalRemoval(checks, false);
+    checkOriginalRemoval(checks, true);
+    return checks.report();
+  }
+
+  private static void checkOriginalRoundTrip(Checks checks, ScheduleChoices choice,
+      int numChannels) {
+    var name = choice + " on " + numChannels + " channels";
+    var program = build("StressTest", numChannels, choice);
+    var before = copy(program.getSchedule());
+    var misses = program.deadlineMisses().size();
+    quietly(() -> program.addFlow("F11", 12, 50, 50, 0, NEW_FLOW_NODES));
+    var schedulable = quietly(() -> program.removeFlow("F11"));
+    checks.checkEquals(misses == 0, schedulable, name + ": schedulable after the round trip");
+    checks.checkEquals(before, copy(program.getSchedule()),
+        name + ": program after the round trip");
+    checks.checkEquals(misses, program.deadlineMisses().size(), name + ": deadline misses");
+    checks.check(channelsMatch(program), name + ": channels available don't match the program");
+  }
+
+  private static void checkOriginalRemoval(Checks checks, Boolean compact) {
+    var name = "PRIORITY, compact " + compact;
+    var program = build("StressTest", 4, ScheduleChoices.PRIORITY);
+    quietly(() -> program.removeFlow("F1", compact));
+    var schedule = program.getSchedule();
+    var left = 0;
+    for (int row = 0; row < schedule.size(); row++) {
+      for (int node = 0; node < schedule.getNumColumns(); node++) {
+        left += schedule.get(row, node).hasFlow("F1") ? 1 : 0;
+      }
+    }
+    checks.checkEquals(0, left, name + ": instructions of F1 left");
+    checks.check(!program.toWorkLoad().getFlowNamesInPriorityOrder().contains("F1"),
+        name + ": F1 is still in the workload");
+    checks.check(channelsMatch(program), name + ": channels available don't match the program");
+  }
+
+  private static void checkPosetRoundTrip(Checks checks, int numChannels) {
+    var name = "poset on " + numChannels + " channels";
+    var workLoad = quietly(() -> new WorkLoad(1, 0.9, 0.99, "StressTest.txt"));
+    workLoad.setFlowsInPriorityOrder();
+    var schedule = quietly(
+        () -> new NonPreemptiveSchedule(new ConnectivityPoset(workLoad), numChannels));
+    var program = quietly(schedule::toProgram);
+    var table = table(schedule);
+    var before = copy(program);
+    workLoad.addFlow("F11", 12, 50, 50, 0, NEW_FLOW_NODES);
+    workLoad.setFlowsInPriorityOrder();
+    quietly(() -> schedule.addFlow("F11"));
+    var added = quietly(() -> schedule.updateProgram(program));
+    workLoad.removeFlow("F11");
+    var schedulable = quietly(() -> schedule.removeFlow("F11"));
+    var removed = quietly(() -> schedule.updateProgram(added));
+    checks.check(schedulable, name + ": not schedulable after the round trip");
+    checks.checkEquals(table, table(schedule), name + ": schedule after the round trip");
+    checks.checkEquals(before, copy(removed), name + ": program after the round trip");
+  }
+
+  /*
+   * Removes the flow of an edge in a combined entry, which must leave entries no longer than
+   * their edges need and a program that is the one toProgram() generates.
+   */
+  private static void checkPosetRemoval(Checks checks, int numChannels) {
+    var name = "poset on " + numChannels + " channels";
+    var workLoad = quietly(() -> new WorkLoad(1, 0.9, 0.99, "WARP-WASHU-MIX.txt"));
+    workLoad.setFlowsInPriorityOrder();
+    var schedule = quietly(
+        () -> new NonPreemptiveSchedule(new ConnectivityPoset(workLoad), numChannels));
+    var program = quietly(schedule::toProgram);
+    String flowName = null;
+    for (int time = 0; time < schedule.endScheduleTime && flowName == null; time++) {
+      for (int channel = 0; channel < numChannels && flowName == null; channel++) {
+        var entry = schedule.schedule.get(channel, time);
+        if (entry instanceof CombinedActivation) {
+          flowName = entry.getEdges().get(0).getFlow();
+        }
+      }
+    }
+    checks.check(flowName != null, name + ": no combined entries");
+    if (flowName != null) {
+      workLoad.removeFlow(flowName);
+      var removedFlow = flowName;
+      quietly(() -> schedule.removeFlow(removedFlow));
+      var tooLong = 0;
+      var left = 0;
+      for (int channel = 0; channel < numChannels; channel++) {
+        for (int time = 0; time < schedule.endScheduleTime; time++) {
+          var entry = schedule.schedule.get(channel, time);
+          if (entry != null) {
+            var duration = entry.getEndTime() - entry.getStartTime() + 1;
+            tooLong += (duration > entry.getExecutionDuration()) ? 1 : 0;
+            left += entry.getEdges().stream()
+                .anyMatch(edge -> edge.getFlow().equals(removedFlow)) ? 1 : 0;
+          }
+        }
+      }
+      checks.checkEquals(0, left, name + ": entries with edges of " + flowName);
+      checks.checkEquals(0, tooLong, name + ": entries longer than their edges need");
+      var updated = quietly(() -> schedule.updateProgram(program));
+      checks.checkEquals(copy(quietly(schedule::toProgram)), copy(updated),
+          name + ": updated program");
+    }
+  }
+
+  /*
+   * Returns each entry of the schedule, with the times it starts and ends, channel by channel.
+   */
+  private static String table(Schedule schedule) {
+    var table = new StringBuilder();
+    for (int channel = 0; channel <= schedule.numChannels; channel++) {
+      for (int time = 0; time < schedule.endScheduleTime; time++) {
+        var entry = schedule.schedule.get(channel, time);
+        table.append(entry == null ? "-"
+            : String.format("%s[%d,%d]", entry.getName(), entry.getStartTime(),
+                entry.getEndTime()));
+        table.append(' ');
+      }
+      table.append('\n');
+    }
+    return table.toString();
+  }
+}
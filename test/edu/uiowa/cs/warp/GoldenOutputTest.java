@@ -0,0 +1,215 @@
+package edu.uiowa.cs.warp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * GoldenOutputTest runs WARP with -a on each example workload and checks that every file it
+ * writes, and its console output, is byte-for-byte the same as the golden output recorded in
+ * test/golden. Each example is run with one job and with several, so the check also covers the
+ * requirement that the job count doesn't change any result.
+ *
+ * <p>
+ * The golden output is recorded as one SHA-256 manifest per example (test/golden/Example.sha256, in
+ * sha256sum format), where stdout and stderr stand for the console output. A change that changes
+ * the output on purpose must update the manifests in the same commit, by running this test with
+ * -update, so the change shows up in review.
+ *
+ * <p>
+ * Run from the project root with the WARP classes and CS2820.jar on the class path:
+ *
+ * <pre>
+ * java -cp bin:test-bin:CS2820.jar edu.uiowa.cs.warp.GoldenOutputTest [-update] [Example ...]
+ * </pre>
+ *
+ * @author sgoddard
+ */
+public class GoldenOutputTest {
+
+  /** The example workloads (in the project root) whose output is checked. */
+  static final String[] EXAMPLES = {"Example1a", "Example2", "Example4", "ExampleX", "StressTest",
+      "LongChain", "IPSN2021figure2", "IPSN2021figure4", "Test1", "WARP-WASHU-MIX", "Preempt1",
+      "SeeSpray"};
+
+  /** The job counts each example is run with; the first one records the golden output. */
+  private static final int[] JOBS = {1, 4};
+
+  private static final Path GOLDEN_DIRECTORY = Paths.get("test", "golden");
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    var update = false;
+    var examples = new ArrayList<String>();
+    for (String arg : args) {
+      if (arg.equals("-update")) {
+        update = true;
+      } else {
+        examples.add(arg);
+      }
+    }
+    if (examples.isEmpty()) {
+      examples.addAll(Arrays.asList(EXAMPLES));
+    }
+    var failures = update ? record(examples) : check(examples);
+    System.exit(failures == 0 ? 0 : 1);
+  }
+
+  /**
+   * Checks the output of every example against its golden manifest.
+   *
+   * @return the number of failures
+   */
+  static int run() throws IOException, InterruptedException {
+    return check(Arrays.asList(EXAMPLES));
+  }
+
+  private static int check(List<String> examples) throws IOException, InterruptedException {
+    var failures = 0;
+    for (String example : examples) {
+      var golden = readManifest(GOLDEN_DIRECTORY.resolve(example + ".sha256"));
+      for (int jobs : JOBS) {
+        var actual = synthesize(example, jobs);
+        var differences = compare(golden, actual);
+        if (differences.isEmpty()) {
+          System.out.printf("PASS %s -j %d\n", example, jobs);
+        } else {
+          failures++;
+          System.out.printf("FAIL %s -j %d\n", example, jobs);
+          for (String difference : differences) {
+            System.out.println("\t" + difference);
+          }
+        }
+      }
+    }
+    return failures;
+  }
+
+  private static int record(List<String> examples) throws IOException, InterruptedException {
+    var failures = 0;
+    Files.createDirectories(GOLDEN_DIRECTORY);
+    for (String example : examples) {
+      var golden = synthesize(example, JOBS[0]);
+      for (int i = 1; i < JOBS.length; i++) {
+        var differences = compare(golden, synthesize(example, JOBS[i]));
+        if (!differences.isEmpty()) {
+          failures++;
+          System.out.printf("FAIL %s: -j %d output differs from -j %d\n", example, JOBS[i],
+              JOBS[0]);
+          differences.forEach(difference -> System.out.println("\t" + difference));
+        }
+      }
+      writeManifest(GOLDEN_DIRECTORY.resolve(example + ".sha256"), golden);
+      System.out.printf("Recorded %s (%d entries)\n", example, golden.size());
+    }
+    return failures;
+  }
+
+  /*
+   * Runs WARP with -a on the example in a separate JVM (WARP keeps its options in static fields)
+   * and returns the manifest of its output.
+   */
+  private static Map<String, String> synthesize(String example, int jobs)
+      throws IOException, InterruptedException {
+    var outputDirectory = Files.createTempDirectory("warp-" + example);
+    var stdout = Files.createTempFile("warp-" + example, ".stdout");
+    var stderr = Files.createTempFile("warp-" + example, ".stderr");
+    try {
+      var java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+      var process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+          "edu.uiowa.cs.warp.Warp", "-i", example + ".txt", "-a", "-j", String.valueOf(jobs), "-o",
+          outputDirectory.toString() + File.separator).redirectOutput(stdout.toFile())
+              .redirectError(stderr.toFile()).start();
+      var exitValue = process.waitFor();
+      if (exitValue != 0) {
+        throw new IllegalStateException(
+            String.format("WARP exited with %d on %s:\n%s", exitValue, example,
+                new String(Files.readAllBytes(stderr), StandardCharsets.UTF_8)));
+      }
+      var manifest = new TreeMap<String, String>();
+      try (Stream<Path> files = Files.list(outputDirectory)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          manifest.put(file.getFileName().toString(), sha256(file));
+        }
+      }
+      manifest.put("stdout", sha256(stdout));
+      manifest.put("stderr", sha256(stderr));
+      return manifest;
+    } finally {
+      delete(outputDirectory);
+      Files.deleteIfExists(stdout);
+      Files.deleteIfExists(stderr);
+    }
+  }
+
+  private static List<String> compare(Map<String, String> golden, Map<String, String> actual) {
+    var differences = new ArrayList<String>();
+    for (Map.Entry<String, String> entry : golden.entrySet()) {
+      var hash = actual.get(entry.getKey());
+      if (hash == null) {
+        differences.add("missing " + entry.getKey());
+      } else if (!hash.equals(entry.getValue())) {
+        differences.add("changed " + entry.getKey());
+      }
+    }
+    for (String name : actual.keySet()) {
+      if (!golden.containsKey(name)) {
+        differences.add("new " + name);
+      }
+    }
+    return differences;
+  }
+
+  private static Map<String, String> readManifest(Path file) throws IOException {
+    var manifest = new TreeMap<String, String>();
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      if (!line.isBlank()) {
+        var hashAndName = line.split("  ", 2); // sha256sum format
+        manifest.put(hashAndName[1], hashAndName[0]);
+      }
+    }
+    return manifest;
+  }
+
+  private static void writeManifest(Path file, Map<String, String> manifest) throws IOException {
+    var lines = new ArrayList<String>();
+    manifest.forEach((name, hash) -> lines.add(hash + "  " + name));
+    Files.write(file, lines, StandardCharsets.UTF_8);
+  }
+
+  private static String sha256(Path file) throws IOException {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file));
+      var hex = new StringBuilder();
+      for (byte b : digest) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void delete(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted((a, b) -> b.compareTo(a)).forEach(file -> {
+        try {
+          Files.delete(file);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package edu.uiowa.cs.warp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * ProgramScheduleTest checks that SparseProgramSchedule and CompressedProgramSchedule, which keep
+ * their time slots outside the ArrayList they extend, behave like a dense ProgramSchedule through
+ * every List method, and that CompressedProgramSchedule rejects every change.
+ *
+ * @author sgoddard
+ */
+public class ProgramScheduleTest {
+
+  private static final int NUM_COLUMNS = 3;
+
+  public static void main(String[] args) {
+    System.exit(run() == 0 ? 0 : 1);
+  }
+
+  static int run() {
+    var failures = 0;
+    failures += testSparse();
+    failures += testCompressed();
+    return failures;
+  }
+
+  private static int testSparse() {
+    var checks = new Checks("SparseProgramSchedule");
+    var dense = new ProgramSchedule();
+    var sparse = new SparseProgramSchedule(NUM_COLUMNS);
+    for (int row = 0; row < 6; row++) {
+      dense.add(timeSlot(row));
+      sparse.add(timeSlot(row));
+    }
+    checks.checkEquals(dense, sparse, "rows added with add()");
+    checks.checkEquals(sparse, dense, "equals() is symmetric");
+    checks.checkEquals(dense.hashCode(), sparse.hashCode(), "hashCode()");
+    checks.checkEquals(dense.toString(), sparse.toString(), "toString()");
+    checks.checkEquals(6L, sparse.stream().count(), "stream()");
+    checks.check(Arrays.equals(dense.toArray(), sparse.toArray()), "toArray()");
+    checks.checkEquals(Arrays.asList(dense.toArray(new InstructionTimeSlot[0])),
+        Arrays.asList(sparse.toArray(new InstructionTimeSlot[0])), "toArray(T[])");
+    var visited = new ArrayList<InstructionTimeSlot>();
+    sparse.forEach(visited::add);
+    checks.checkEquals(dense, visited, "forEach()");
+    checks.checkEquals(dense.subList(2, 4), sparse.subList(2, 4), "subList()");
+    checks.checkEquals(3, sparse.indexOf(timeSlot(3)), "indexOf()");
+    checks.check(sparse.contains(timeSlot(5)), "contains()");
+    checks.checkEquals(timeSlot(0), sparse.getFirst(), "getFirst()");
+    checks.checkEquals(timeSlot(5), sparse.getLast(), "getLast()");
+
+    dense.add(1, timeSlot(7));
+    sparse.add(1, timeSlot(7));
+    checks.checkEquals(dense, sparse, "add(row, timeSlot) inserts a row");
+    dense.remove(3);
+    sparse.remove(3);
+    checks.checkEquals(dense, sparse, "remove(row)");
+    var iterator = sparse.iterator();
+    iterator.next();
+    iterator.remove();
+    dense.remove(0);
+    checks.checkEquals(dense, sparse, "iterator().remove()");
+    dense.removeIf(timeSlot -> timeSlot.equals(timeSlot(4)));
+    sparse.removeIf(timeSlot -> timeSlot.equals(timeSlot(4)));
+    checks.checkEquals(dense, sparse, "removeIf()");
+    dense.addAll(List.of(timeSlot(8), timeSlot(9)));
+    sparse.addAll(List.of(timeSlot(8), timeSlot(9)));
+    checks.checkEquals(dense, sparse, "addAll()");
+    dense.subList(1, 3).clear();
+    sparse.subList(1, 3).clear();
+    checks.checkEquals(dense, sparse, "subList().clear()");
+    dense.replaceAll(timeSlot -> timeSlot(2));
+    sparse.replaceAll(timeSlot -> timeSlot(2));
+    checks.checkEquals(dense, sparse, "replaceAll()");
+    checks.checkEquals(dense.size(), sparse.getNumRows(), "getNumRows()");
+
+    var copy = sparse.clone();
+    copy.set(0, 0, Instruction.wait(9));
+    checks.checkEquals(dense, sparse, "clone() doesn't share storage");
+    sparse.clear();
+    checks.check(sparse.isEmpty() && sparse.stream().count() == 0, "clear()");
+    return checks.report();
+  }
+
+  private static int testCompressed() {
+    var checks = new Checks("CompressedProgramSchedule");
+    var dense = new ProgramSchedule();
+    for (int row = 0; row < 12; row++) {
+      dense.add(timeSlot(row % 4)); // period of 4 rows
+    }
+    var compressed = new CompressedProgramSchedule(dense);
+    checks.checkEquals(dense, compressed, "copy");
+    checks.checkEquals(4, compressed.getPeriod(0), "getPeriod()");
+    checks.checkEquals(dense.hashCode(), compressed.hashCode(), "hashCode()");
+    checks.checkEquals(dense.stream().collect(Collectors.toList()),
+        compressed.stream().collect(Collectors.toList()), "stream()");
+    checks.check(Arrays.equals(dense.toArray(), compressed.toArray()), "toArray()");
+    var visited = new ArrayList<InstructionTimeSlot>();
+    compressed.forEach(visited::add);
+    checks.checkEquals(dense, visited, "forEach()");
+    checks.checkEquals(dense.subList(5, 9), compressed.subList(5, 9), "subList()");
+    checks.checkEquals(dense.get(7, 1), compressed.get(7, 1), "get(row, column)");
+
+    var immutable = UnsupportedOperationException.class;
+    checks.checkThrows(immutable, () -> compressed.add(timeSlot(0)), "add()");
+    checks.checkThrows(immutable, () -> compressed.add(0, timeSlot(0)), "add(row, timeSlot)");
+    checks.checkThrows(immutable, () -> compressed.set(0, timeSlot(0)), "set(row, timeSlot)");
+    checks.checkThrows(immutable, () -> compressed.set(0, 0, Instruction.sleep()),
+        "set(row, column, instruction)");
+    checks.checkThrows(immutable, () -> compressed.remove(0), "remove(row)");
+    checks.checkThrows(immutable, () -> compressed.remove(timeSlot(0)), "remove(timeSlot)");
+    checks.checkThrows(immutable, () -> compressed.addAll(List.of(timeSlot(0))), "addAll()");
+    checks.checkThrows(immutable, () -> compressed.removeIf(timeSlot -> true), "removeIf()");
+    checks.checkThrows(immutable, () -> compressed.replaceAll(timeSlot -> timeSlot),
+        "replaceAll()");
+    checks.checkThrows(immutable, () -> compressed.clear(), "clear()");
+    checks.checkThrows(immutable, () -> compressed.extendTo(20), "extendTo()");
+    checks.checkThrows(immutable, () -> {
+      var iterator = compressed.iterator();
+      iterator.next();
+      iterator.remove();
+    }, "iterator().remove()");
+    checks.checkThrows(immutable, () -> compressed.subList(0, 2).clear(), "subList().clear()");
+    checks.checkEquals(dense, compressed, "unchanged after the rejected changes");
+    return checks.report();
+  }
+
+  /*
+   * Returns a time slot in which one node, chosen by the row, pushes and the other nodes wait or
+   * sleep.
+   */
+  private static InstructionTimeSlot timeSlot(int row) {
+    var timeSlot = new InstructionTimeSlot(NUM_COLUMNS, Instruction.sleep());
+    timeSlot.set(row % NUM_COLUMNS, Instruction.push("F" + row, "A", "B", row % 2).ifHas());
+    timeSlot.set((row + 1) % NUM_COLUMNS, Instruction.wait(row % 2));
+    return timeSlot;
+  }
+}
@@ -0,0 +1,103 @@
+package edu.uiowa.cs.warp;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * ScheduleProbeAllocationTest checks that the availability probes the poset scheduler makes when
+ * it places an activation don't allocate memory. It builds the schedule of an example workload and
+ * then checks, many times, that each entry is available at its start time on its channel, as the
+ * scheduler does, while measuring the bytes the thread allocates. The test is skipped on JVMs that
+ * don't measure the memory allocated by a thread.
+ *
+ * @author sgoddard
+ */
+public class ScheduleProbeAllocationTest {
+
+  private static final String[] EXAMPLES = {"StressTest", "WARP-WASHU-MIX"};
+  private static final int WARM_UP_ROUNDS = 200;
+  private static final int ROUNDS = 200;
+
+  public static void main(String[] args) {
+    System.exit(run() == 0 ? 0 : 1);
+  }
+
+  static int run() {
+    var checks = new Checks("ScheduleProbeAllocation");
+    var bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)
+        || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      System.out.println("SKIP ScheduleProbeAllocation: thread allocation isn't measured");
+      return 0;
+    }
+    var threadBean = (com.sun.management.ThreadMXBean) bean;
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+    for (String example : EXAMPLES) {
+      var schedule = build(example);
+      var bytesPerProbe = measureProbeAllocation(schedule, threadBean);
+      checks.check(bytesPerProbe == 0.0,
+          String.format("%s: %.2f bytes allocated per probe", example, bytesPerProbe));
+    }
+    return checks.report();
+  }
+
+  /*
+   * Returns the poset schedule of example on 16 channels, without the output it prints while it is
+   * built.
+   */
+  private static Schedule build(String example) {
+    var out = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      var workLoad = new WorkLoad(1, 0.9, 0.99, example + ".txt");
+      workLoad.setFlowsInPriorityOrder();
+      return new NonPreemptiveSchedule(new ConnectivityPoset(workLoad), 16);
+    } finally {
+      System.setOut(out);
+    }
+  }
+
+  /*
+   * Returns the average number of bytes allocated by checking that each distinct entry of the
+   * schedule is available at its start time on its channel.
+   */
+  private static double measureProbeAllocation(Schedule schedule,
+      com.sun.management.ThreadMXBean threadBean) {
+    var entries = new ArrayList<Activation>();
+    var channels = new ArrayList<Integer>();
+    for (int channel = 0; channel < schedule.numChannels; channel++) {
+      Activation previous = null;
+      for (int time = 0; time < schedule.endScheduleTime; time++) {
+        var entry = schedule.schedule.get(channel, time);
+        if (entry != null && entry != previous) {
+          entries.add(entry);
+          channels.add(channel);
+        }
+        previous = entry;
+      }
+    }
+    var entryArray = entries.toArray(new Activation[0]);
+    var channelArray = channels.stream().mapToInt(Integer::intValue).toArray();
+    for (int round = 0; round < WARM_UP_ROUNDS; round++) { // so the probes are compiled
+      probeEntries(schedule, entryArray, channelArray);
+    }
+    var thread = Thread.currentThread().getId();
+    var before = threadBean.getThreadAllocatedBytes(thread);
+    for (int round = 0; round < ROUNDS; round++) {
+      probeEntries(schedule, entryArray, channelArray);
+    }
+    var allocated = threadBean.getThreadAllocatedBytes(thread) - before;
+    var numProbes = (long) ROUNDS * entryArray.length;
+    return (numProbes == 0) ? 0.0 : (double) allocated / numProbes;
+  }
+
+  private static void probeEntries(Schedule schedule, Activation[] entries, int[] channels) {
+    for (int i = 0; i < entries.length; i++) {
+      var entry = entries[i];
+      schedule.isAvailable(entry, channels[i], entry.getStartTime(),
+          entry.getExecutionDuration());
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package edu.uiowa.cs.warp;
+
+import static edu.uiowa.cs.warp.FlowAdmissionTest.quietly;
+
+/**
+ * SynthesisContextTest checks that a workload builds its SynthesisContext again after a flow
+ * attribute it depends on changes. The maximum phase is the phase of the flow with the longest
+ * deadline, so changing a deadline can change it even though no phase changed.
+ *
+ * @author sgoddard
+ */
+public class SynthesisContextTest {
+
+  public static void main(String[] args) {
+    System.exit(run() == 0 ? 0 : 1);
+  }
+
+  static int run() {
+    var checks = new Checks("SynthesisContext");
+    checkDeadline(checks);
+    checkPriority(checks);
+    return checks.report();
+  }
+
+  private static void checkDeadline(Checks checks) {
+    var workLoad = quietly(() -> new WorkLoad(1, 0.9, 0.99, "Example1a.txt"));
+    workLoad.setFlowPhase("F0", 3);
+    /* F1 has the longest deadline, 20, and phase 0 */
+    checks.checkEquals(0, workLoad.getSynthesisContext().getMaxPhase(), "max phase before");
+    workLoad.setFlowDeadline("F0", 40);
+    checks.checkEquals(3, workLoad.getSynthesisContext().getMaxPhase(),
+        "max phase after F0 has the longest deadline");
+  }
+
+  private static void checkPriority(Checks checks) {
+    var workLoad = quietly(() -> new WorkLoad(1, 0.9, 0.99, "Example1a.txt"));
+    var context = workLoad.getSynthesisContext();
+    workLoad.setFlowPriority("F0", 5);
+    checks.check(context != workLoad.getSynthesisContext(),
+        "the context wasn't built again after a priority changed");
+  }
+}